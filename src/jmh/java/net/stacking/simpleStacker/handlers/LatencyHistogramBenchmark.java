@@ -0,0 +1,48 @@
+package net.stacking.simpleStacker.handlers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a phase, alone and from several threads at once like the workers do
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LatencyHistogramBenchmark {
+
+    private LatencyHistogram histogram;
+
+    @Setup
+    public void setup() {
+        histogram = new LatencyHistogram();
+        // Something to read percentiles from
+        for (long nanos = 1_000; nanos < 50_000_000; nanos += 997) {
+            histogram.record(nanos);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        histogram.record(System.nanoTime() & 0xFFFFFF);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        histogram.record(System.nanoTime() & 0xFFFFFF);
+    }
+
+    @Benchmark
+    public long percentile() {
+        return histogram.getPercentile(0.99);
+    }
+}
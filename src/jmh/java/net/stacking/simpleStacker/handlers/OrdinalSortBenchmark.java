@@ -0,0 +1,54 @@
+package net.stacking.simpleStacker.handlers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The /stack sort ordering on a full inventory, against a comparator sort as baseline
+ * Keys are spread like Material ordinals, with a few empty slots
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrdinalSortBenchmark {
+
+    // Same size as a player's main inventory
+    private static final int SLOTS = 36;
+    // Roughly the number of Material constants
+    private static final int MATERIALS = 1500;
+
+    private Integer[] scenario;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        scenario = new Integer[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            scenario[i] = random.nextInt(5) == 0 ? null : random.nextInt(MATERIALS);
+        }
+    }
+
+    @Benchmark
+    public Integer[] radix() {
+        Integer[] slots = scenario.clone();
+        OrdinalSort.sort(slots, Integer::intValue);
+        return slots;
+    }
+
+    @Benchmark
+    public Integer[] comparator() {
+        Integer[] slots = scenario.clone();
+        Arrays.sort(slots, Comparator.nullsLast(Comparator.naturalOrder()));
+        return slots;
+    }
+}
@@ -0,0 +1,54 @@
+package net.stacking.simpleStacker.handlers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fill step of /stack on one group, the sizes are copied fresh for every call
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StackFillBenchmark {
+
+    // Same size as a player's main inventory
+    private static final int SLOTS = 36;
+
+    /**
+     * singles: 36 single items that end up in one stack of 64
+     * partial: half-full stacks, every other one is emptied
+     * full: nothing to move
+     */
+    @Param({"singles", "partial", "full"})
+    public String scenario;
+
+    private int[] amounts;
+    private int[] targets;
+
+    @Setup
+    public void setup() {
+        int amount = switch (scenario) {
+            case "singles" -> 1;
+            case "partial" -> 32;
+            default -> 64;
+        };
+        amounts = new int[SLOTS];
+        targets = new int[SLOTS];
+        Arrays.fill(amounts, amount);
+        Arrays.fill(targets, 64);
+    }
+
+    @Benchmark
+    public int fill() {
+        return StackFill.fill(amounts.clone(), targets);
+    }
+}
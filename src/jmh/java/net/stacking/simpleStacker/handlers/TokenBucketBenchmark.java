@@ -0,0 +1,36 @@
+package net.stacking.simpleStacker.handlers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The /stack rate limit check, on one player's bucket and with several threads hitting the same bucket
+ * Uses the default config, so most calls find the bucket empty like a spamming player would
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenBucketBenchmark {
+
+    private final TokenBucket bucket = new TokenBucket(3, 1);
+    private final AtomicLong full = new AtomicLong(TokenBucket.FULL);
+
+    @Benchmark
+    public boolean tryAcquire() {
+        return bucket.tryAcquire(full, System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean tryAcquireContended() {
+        return bucket.tryAcquire(full, System.nanoTime());
+    }
+}
@@ -1,16 +1,47 @@
 package net.stacking.simpleStacker;
 
 import net.stacking.simpleStacker.commands.StackCommand;
+import net.stacking.simpleStacker.handlers.BulkStackQueue;
+import net.stacking.simpleStacker.handlers.ConfigWatcher;
+import net.stacking.simpleStacker.handlers.ItemConsolidator;
 import net.stacking.simpleStacker.handlers.ItemHandler;
+import net.stacking.simpleStacker.handlers.LoadSimulation;
+import net.stacking.simpleStacker.handlers.ShulkerFingerprint;
+import net.stacking.simpleStacker.handlers.StackEngine;
+import net.stacking.simpleStacker.handlers.StackRateLimiter;
+import net.stacking.simpleStacker.handlers.StackStats;
+import net.stacking.simpleStacker.handlers.UsageNotifier;
+import net.stacking.simpleStacker.listeners.DeathDropListener;
 import net.stacking.simpleStacker.listeners.DurabilityUsageListener;
+import net.stacking.simpleStacker.listeners.HopperListener;
+import net.stacking.simpleStacker.listeners.ItemConsolidationListener;
+import net.stacking.simpleStacker.listeners.RateLimitListener;
+import net.stacking.simpleStacker.listeners.ShulkerFingerprintListener;
+import net.stacking.simpleStacker.listeners.SourceStampListener;
+import net.stacking.simpleStacker.listeners.StackingListener;
+import org.bukkit.event.HandlerList;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.Objects;
 
 public class SimpleStacker extends JavaPlugin {
 
+    private static final String STATS_MBEAN_NAME = "net.stacking.simpleStacker:type=StackStats";
+
     private static SimpleStacker instance;
     private ItemHandler itemHandler;
+    private StackEngine stackEngine;
+    private StackStats stats;
+    private ConfigWatcher configWatcher;
+    private BulkStackQueue bulkStackQueue;
+    private StackingListener stackingListener;
+    private ItemConsolidator itemConsolidator;
+    private LoadSimulation loadSimulation;
+    private StackRateLimiter rateLimiter;
+    private DurabilityUsageListener durabilityListener;
 
     @Override
     public void onEnable() {
@@ -23,29 +54,144 @@ public class SimpleStacker extends JavaPlugin {
         itemHandler = new ItemHandler();
         itemHandler.loadStackSizes();
 
-        // Removed: StackingListener (no auto-stacking!)
-        // Items will only stack when /stack command is used
+        // Counters and timings for /stack stats, also visible over JMX and in JFR recordings
+        stats = new StackStats();
+        registerStatsMBean();
+
+        // Merge engine used by /stack, shulkers carry a content hash for quick comparisons
+        ShulkerFingerprint fingerprints = new ShulkerFingerprint(this);
+        stackEngine = new StackEngine(fingerprints, stats);
+
+        // Optional: pick up config.yml edits without /stack reload
+        if (getConfig().getBoolean("auto-reload.enabled", false)) {
+            configWatcher = new ConfigWatcher(this, getConfig().getLong("auto-reload.debounce-ms", 1000));
+            configWatcher.start();
+        }
+
+        // Opt-in auto stacking (/stack auto), only touched slots are stacked, once per tick
+        if (getConfig().getBoolean("auto-stack.enabled", true)) {
+            stackingListener = new StackingListener(this, getConfig().getBoolean("auto-stack.default-on", false));
+            stackingListener.loadOnline(getServer().getOnlinePlayers());
+            getServer().getPluginManager().registerEvents(stackingListener, this);
+        }
 
-        // Register listener to prevent using stacked damageable items
+        // Register listener to prevent using stacked damageable items, only if any of them can stack
+        updateDurabilityGuard();
+
+        // Drop shulker fingerprints whenever a box comes back as an item, its contents may have changed
         getServer().getPluginManager().registerEvents(
-                new DurabilityUsageListener(),
+                new ShulkerFingerprintListener(fingerprints),
                 this
         );
 
+        // Optional: merge dropped items on the ground up to the configured stack sizes
+        if (getConfig().getBoolean("item-merge.enabled", false)) {
+            itemConsolidator = new ItemConsolidator(this,
+                    getConfig().getDouble("item-merge.radius", 1.5),
+                    getConfig().getLong("item-merge.delay-ticks", 10),
+                    getConfig().getDouble("item-merge.tick-budget-ms", 2));
+            itemConsolidator.start();
+            getServer().getPluginManager().registerEvents(new ItemConsolidationListener(itemConsolidator), this);
+        }
+
+        // Stack a dead player's drops before they spawn
+        if (getConfig().getBoolean("death-drops.compact", true)) {
+            getServer().getPluginManager().registerEvents(new DeathDropListener(this), this);
+        }
+
+        // Stamp loot, trades and crafting results as they are made, so they stack without /stack
+        if (getConfig().getBoolean("stamp-at-source", true)) {
+            getServer().getPluginManager().registerEvents(new SourceStampListener(this), this);
+        }
+
+        // Optional: hoppers fill stacks up to the configured sizes
+        if (getConfig().getBoolean("hoppers.enabled", false)) {
+            getServer().getPluginManager().registerEvents(new HopperListener(this), this);
+        }
+
+        // Per-player limit on /stack, plus a server-wide cap on passes running at once
+        rateLimiter = StackRateLimiter.fromConfig(this);
+        if (rateLimiter != null) {
+            getServer().getPluginManager().registerEvents(new RateLimitListener(rateLimiter), this);
+        }
+
         // Register command executor from plugin.yml
+        StackCommand stackCommand = new StackCommand(this);
         Objects.requireNonNull(getCommand("stack"), "Command 'stack' not found in plugin.yml")
-                .setExecutor(new StackCommand(this));
+                .setExecutor(stackCommand);
+
+        // /stack all and /stack player share one queue, spread over ticks
+        bulkStackQueue = new BulkStackQueue(this, stackCommand::stackInventorySafe,
+                getConfig().getDouble("bulk.tick-budget-ms", 5));
+
+        // /stack simulate, idle until an admin starts a run
+        loadSimulation = new LoadSimulation(this);
 
-        getLogger().info("SimpleStacker enabled - Manual stacking only mode!");
+        getLogger().info("SimpleStacker enabled!");
         getLogger().info("Stack rules loaded: " + itemHandler.getTargets().size());
-        getLogger().info("Use /stack command to stack items (no auto-stacking)");
+        getLogger().info("Use /stack command to stack items" + (stackingListener != null ? ", /stack auto to toggle auto-stacking" : ""));
     }
 
     @Override
     public void onDisable() {
+        if (configWatcher != null) {
+            configWatcher.stop();
+            configWatcher = null;
+        }
+        if (bulkStackQueue != null) {
+            bulkStackQueue.cancel();
+        }
+        if (itemConsolidator != null) {
+            itemConsolidator.stop();
+            itemConsolidator = null;
+        }
+        if (loadSimulation != null) {
+            loadSimulation.cancel();
+        }
+        unregisterStatsMBean();
         getLogger().info("SimpleStacker has been disabled!");
     }
 
+    /**
+     * Register the stacked tool listener when damageable items have stack rules, unregister it when none do
+     * Called on enable and after every reload
+     */
+    public void updateDurabilityGuard() {
+        boolean needed = itemHandler.getRules().hasDamageableRule();
+
+        if (needed && durabilityListener == null) {
+            durabilityListener = new DurabilityUsageListener(this, stats,
+                    new UsageNotifier(this, getConfig().getLong("stacked-use-message.window-ms", 1000)));
+            getServer().getPluginManager().registerEvents(durabilityListener, this);
+            durabilityListener.loadOnline(getServer().getOnlinePlayers());
+        } else if (!needed && durabilityListener != null) {
+            HandlerList.unregisterAll(durabilityListener);
+            durabilityListener = null;
+        }
+    }
+
+    private void registerStatsMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(STATS_MBEAN_NAME);
+            // Left over from a previous load of the plugin
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(stats, name);
+        } catch (Exception e) {
+            getLogger().warning("Could not register stats MBean: " + e.getMessage());
+        }
+    }
+
+    private void unregisterStatsMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(STATS_MBEAN_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (Exception e) {
+            // Fail silently
+        }
+    }
+
     public static SimpleStacker getInstance() {
         return instance;
     }
@@ -53,4 +199,34 @@ public class SimpleStacker extends JavaPlugin {
     public ItemHandler getItemHandler() {
         return itemHandler;
     }
+
+    public StackEngine getStackEngine() {
+        return stackEngine;
+    }
+
+    public StackStats getStats() {
+        return stats;
+    }
+
+    public BulkStackQueue getBulkStackQueue() {
+        return bulkStackQueue;
+    }
+
+    /**
+     * /stack rate limiter, or null if rate-limit is disabled in the config
+     */
+    public StackRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public LoadSimulation getLoadSimulation() {
+        return loadSimulation;
+    }
+
+    /**
+     * Auto stacking listener, or null if auto-stack is disabled in the config
+     */
+    public StackingListener getStackingListener() {
+        return stackingListener;
+    }
 }
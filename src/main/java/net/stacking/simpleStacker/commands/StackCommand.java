@@ -1,32 +1,76 @@
 package net.stacking.simpleStacker.commands;
 
 import net.stacking.simpleStacker.SimpleStacker;
-import net.stacking.simpleStacker.handlers.ItemHandler;
+import net.stacking.simpleStacker.handlers.ContainerAccessCheck;
+import net.stacking.simpleStacker.handlers.InventorySnapshot;
+import net.stacking.simpleStacker.handlers.LoadSimulation;
+import net.stacking.simpleStacker.handlers.Scheduling;
+import net.stacking.simpleStacker.handlers.StackBenchmark;
+import net.stacking.simpleStacker.handlers.StackPipeline;
+import net.stacking.simpleStacker.handlers.StackRules;
+import net.stacking.simpleStacker.handlers.StackStats;
+import net.stacking.simpleStacker.listeners.StackingListener;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
-import org.bukkit.block.ShulkerBox;
+import org.bukkit.block.Barrel;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.Chest;
+import org.bukkit.block.Container;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.ItemStack;
+import org.bukkit.event.Event;
+import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.PlayerInventory;
-import org.bukkit.inventory.meta.BlockStateMeta;
-import org.bukkit.inventory.meta.Damageable;
-import org.bukkit.inventory.meta.ItemMeta;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.stream.IntStream;
 
 public class StackCommand implements CommandExecutor {
 
+    // Same as survival block reach
+    private static final int CONTAINER_REACH = 5;
+    private static final int DEFAULT_BENCH_ITERATIONS = 10_000;
+    // Main inventory without the hotbar, for /stack sort with sort.keep-hotbar
+    private static final int[] MAIN_SLOTS_WITHOUT_HOTBAR = IntStream.range(9, 36).toArray();
+
     private final SimpleStacker plugin;
+    private final StackPipeline pipeline;
 
     public StackCommand(SimpleStacker plugin) {
         this.plugin = plugin;
+        this.pipeline = new StackPipeline(plugin, plugin.getStackEngine(), plugin.getStats(), plugin.getRateLimiter());
     }
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("reload")) {
+            return reload(sender);
+        }
+
+        if (args.length > 0 && (args[0].equalsIgnoreCase("all") || args[0].equalsIgnoreCase("player"))) {
+            return bulkStack(sender, args);
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("stats")) {
+            return stats(sender, args);
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("bench")) {
+            return bench(sender, args);
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("simulate")) {
+            return simulate(sender, args);
+        }
+
         if (!(sender instanceof Player)) {
             sender.sendMessage(ChatColor.RED + "This command can only be used by players!");
             return true;
@@ -39,212 +83,411 @@ public class StackCommand implements CommandExecutor {
             return true;
         }
 
-        int stackedCount = stackInventorySafe(player);
+        if (args.length > 0 && args[0].equalsIgnoreCase("enderchest")) {
+            stack(player, player::getEnderChest, null, false);
+            return true;
+        }
 
-        if (stackedCount > 0) {
-            player.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✓ " + ChatColor.LIGHT_PURPLE + "Successfully stacked " + stackedCount + " item group(s)!");
-        } else {
-            player.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✗ " + ChatColor.LIGHT_PURPLE + "No items to stack!");
+        if (args.length > 0 && args[0].equalsIgnoreCase("container")) {
+            return stackContainer(player);
         }
 
+        if (args.length > 0 && args[0].equalsIgnoreCase("auto")) {
+            return toggleAuto(player);
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("sort")) {
+            // The hotbar keeps its layout unless the config says otherwise
+            int[] slots = plugin.getConfig().getBoolean("sort.keep-hotbar", true) ? MAIN_SLOTS_WITHOUT_HOTBAR : null;
+            stack(player, player::getInventory, slots, true);
+            return true;
+        }
+
+        stack(player, player::getInventory, null, false);
         return true;
     }
 
     /**
-     * Safe stacking method for ensuring inventory doesn't clear
-     * Excludes armor equipped and offhand stuff
+     * /stack auto: turn automatic stacking on or off for this player
      */
-    private int stackInventorySafe(Player player) {
-        PlayerInventory inventory = player.getInventory();
-        ItemHandler handler = plugin.getItemHandler();
-        Map<Material, Integer> targets = handler.getTargets();
+    private boolean toggleAuto(Player player) {
+        StackingListener listener = plugin.getStackingListener();
+        if (listener == null) {
+            player.sendMessage(ChatColor.RED + "Auto stacking is disabled on this server!");
+            return true;
+        }
 
-        int stackedGroups = 0;
+        if (listener.toggle(player)) {
+            player.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✓ " + ChatColor.LIGHT_PURPLE + "Auto stacking enabled!");
+        } else {
+            player.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✗ " + ChatColor.LIGHT_PURPLE + "Auto stacking disabled!");
+        }
+        return true;
+    }
 
-        try {
-            // First pass: Apply max stack size metadata only to items in main inventory (0-35)
-            for (int i = 0; i <= 35; i++) { // CHANGED: Only slots 0-35 (excludes armor + offhand)
-                ItemStack item = inventory.getItem(i);
-                if (item != null && item.getType() != Material.AIR) {
-                    applyMaxStackSize(item, targets);
-                }
-            }
+    /**
+     * /stack container: the chest or barrel the player is looking at
+     * Looking at an ender chest stacks the player's own ender chest
+     */
+    private boolean stackContainer(Player player) {
+        Block block = player.getTargetBlockExact(CONTAINER_REACH);
+        if (block == null) {
+            player.sendMessage(ChatColor.RED + "Look at a chest, barrel or ender chest to stack it!");
+            return true;
+        }
 
-            // Second pass: Stack similar items together (ONLY main inventory)
-            for (int i = 0; i <= 35; i++) { // CHANGED: Only slots 0-35
-                ItemStack item = inventory.getItem(i);
-                if (item == null || item.getType() == Material.AIR) continue;
+        if (block.getType() == Material.ENDER_CHEST) {
+            stack(player, player::getEnderChest, null, false);
+            return true;
+        }
 
-                int targetMax = getTargetMaxStack(item, targets);
+        if (!(block.getState() instanceof Container container) || !(container instanceof Chest || container instanceof Barrel)) {
+            player.sendMessage(ChatColor.RED + "Look at a chest, barrel or ender chest to stack it!");
+            return true;
+        }
 
-                // If this stack is already full, skip it
-                if (item.getAmount() >= targetMax) continue;
+        if (!canOpen(player, block)) {
+            player.sendMessage(ChatColor.RED + "You can't open that container!");
+            return true;
+        }
 
-                // Look for similar items in later slots to combine (ONLY in main inventory)
-                for (int j = i + 1; j <= 35; j++) { // CHANGED: Only slots 0-35
-                    ItemStack otherItem = inventory.getItem(j);
-                    if (otherItem == null || otherItem.getType() == Material.AIR) continue;
+        if (container.isLocked()) {
+            player.sendMessage(ChatColor.RED + "That container is locked!");
+            return true;
+        }
 
-                    // Check if items can stack (includes durability check!)
-                    if (!canStack(item, otherItem)) continue;
+        if (hasOtherViewers(container.getInventory(), player)) {
+            player.sendMessage(ChatColor.RED + "Someone else is using that container, try again later!");
+            return true;
+        }
 
-                    // Calculate how much we can transfer
-                    int spaceLeft = targetMax - item.getAmount();
-                    if (spaceLeft <= 0) break; // Current stack is full
+        stack(player, () -> openContainer(block, player), null, false);
+        return true;
+    }
 
-                    int transferAmount = Math.min(spaceLeft, otherItem.getAmount());
+    /**
+     * Live inventory of a chest or barrel (both halves of a double chest),
+     * or null if it is gone, locked or someone else has it open
+     */
+    private Inventory openContainer(Block block, Player player) {
+        if (!(block.getState() instanceof Container container)) return null;
+        if (!(container instanceof Chest || container instanceof Barrel)) return null;
+        if (container.isLocked()) return null;
 
-                    // Transfer items
-                    item.setAmount(item.getAmount() + transferAmount);
-                    otherItem.setAmount(otherItem.getAmount() - transferAmount);
+        Inventory inventory = container.getInventory();
+        return hasOtherViewers(inventory, player) ? null : inventory;
+    }
 
-                    // If the other stack is now empty, remove it
-                    if (otherItem.getAmount() <= 0) {
-                        inventory.setItem(j, null);
-                    }
+    /**
+     * Ask protection plugins the same way a real right-click would
+     * Every PlayerInteractEvent listener sees it, fired with an empty hand so item listeners stay out of it
+     */
+    private boolean canOpen(Player player, Block block) {
+        BlockFace face = player.getTargetBlockFace(CONTAINER_REACH);
+        ContainerAccessCheck event = new ContainerAccessCheck(player, block, face == null ? BlockFace.UP : face);
+        Bukkit.getPluginManager().callEvent(event);
+        return event.useInteractedBlock() != Event.Result.DENY;
+    }
 
-                    stackedGroups++;
-                }
-            }
+    private boolean hasOtherViewers(Inventory inventory, Player player) {
+        for (HumanEntity viewer : inventory.getViewers()) {
+            if (!viewer.equals(player)) return true;
+        }
+        return false;
+    }
 
-            player.updateInventory();
+    private void sendSortResult(Player player, int stackedCount) {
+        player.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✓ " + ChatColor.LIGHT_PURPLE + "Sorted your inventory"
+                + (stackedCount > 0 ? " and stacked " + stackedCount + " item group(s)!" : "!"));
+    }
 
-        } catch (Exception e) {
-            plugin.getLogger().severe("Error during safe stacking for player " + player.getName() + ": " + e.getMessage());
-            e.printStackTrace();
-            player.sendMessage(ChatColor.RED + "An error occurred while stacking. Your items are safe!");
-            return 0;
+    private void sendResult(Player player, int stackedCount) {
+        if (stackedCount > 0) {
+            player.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✓ " + ChatColor.LIGHT_PURPLE + "Successfully stacked " + stackedCount + " item group(s)!");
+        } else {
+            player.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✗ " + ChatColor.LIGHT_PURPLE + "No items to stack!");
         }
+    }
 
-        return stackedGroups;
+    private void sendError(Player player, Exception e) {
+        plugin.getStats().countError();
+        plugin.getLogger().log(Level.SEVERE, "Error during safe stacking for player " + player.getName() + ": " + e.getMessage(), e);
+        player.sendMessage(ChatColor.RED + "An error occurred while stacking. Your items are safe!");
     }
 
     /**
-     * Apply max stack size metadata to an item (now includes damageable items)
+     * Reload stack rules from config.yml without blocking the server
      */
-    private void applyMaxStackSize(ItemStack item, Map<Material, Integer> targets) {
-        if (item == null || item.getType() == Material.AIR) return;
-
-        Integer targetMax = targets.get(item.getType());
-        if (targetMax == null) return;
+    private boolean reload(CommandSender sender) {
+        if (!sender.hasPermission("simplestacker.reload")) {
+            sender.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "You don't have permission to use this command!");
+            return true;
+        }
 
-        // Validate target
-        if (targetMax < 1 || targetMax > 99) return;
+        sender.sendMessage(ChatColor.LIGHT_PURPLE + "Reloading stack rules...");
+        plugin.getItemHandler().reloadAsync(summary -> Scheduling.runFor(plugin, sender, () -> {
+            if (summary != null) {
+                sender.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✓ " + ChatColor.LIGHT_PURPLE + "Reloaded " + summary);
+            } else {
+                sender.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✗ " + ChatColor.LIGHT_PURPLE + "Reload failed, check the console. Old rules are still active.");
+            }
+        }));
+        return true;
+    }
 
-        ItemMeta meta = item.getItemMeta();
-        if (meta == null) return;
+    /**
+     * Queue everyone (/stack all) or one player (/stack player <name>) for stacking over the next ticks
+     */
+    private boolean bulkStack(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("simplestacker.admin")) {
+            sender.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "You don't have permission to use this command!");
+            return true;
+        }
 
-        try {
-            // Apply max stack size (now works for damageable items too!)
-            if (!meta.hasMaxStackSize() || meta.getMaxStackSize() != targetMax) {
-                meta.setMaxStackSize(targetMax);
-                item.setItemMeta(meta);
+        List<Player> players;
+        if (args[0].equalsIgnoreCase("all")) {
+            players = new ArrayList<>(Bukkit.getOnlinePlayers());
+        } else {
+            if (args.length < 2) {
+                sender.sendMessage(ChatColor.RED + "Usage: /stack player <name>");
+                return true;
             }
-        } catch (Exception e) {
-            // Silently fail for items that don't support max stack size
+            Player target = Bukkit.getPlayerExact(args[1]);
+            if (target == null) {
+                sender.sendMessage(ChatColor.RED + "Player " + args[1] + " is not online!");
+                return true;
+            }
+            players = List.of(target);
         }
+
+        int added = plugin.getBulkStackQueue().enqueue(sender, players);
+        sender.sendMessage(ChatColor.LIGHT_PURPLE + "Queued " + added + " player(s) for stacking"
+                + (added < players.size() ? " (" + (players.size() - added) + " already queued)" : "") + "...");
+        return true;
     }
 
     /**
-     * Get the target max stack size for an item
+     * /stack stats [reset]: counters and timings since startup or the last reset
      */
-    private int getTargetMaxStack(ItemStack item, Map<Material, Integer> targets) {
-        Integer target = targets.get(item.getType());
-        if (target != null && target >= 1 && target <= 99) {
-            return target;
+    private boolean stats(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("simplestacker.admin")) {
+            sender.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "You don't have permission to use this command!");
+            return true;
         }
-        return item.getMaxStackSize();
+
+        StackStats stats = plugin.getStats();
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            stats.reset();
+            sender.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✓ " + ChatColor.LIGHT_PURPLE + "Stats reset!");
+            return true;
+        }
+
+        sender.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "SimpleStacker stats");
+        // Counted by the shared engine: /stack, auto-stack, death drops and ground merging together
+        sender.sendMessage(ChatColor.LIGHT_PURPLE + "Engine-wide comparisons: " + ChatColor.WHITE + stats.getComparisons()
+                + ChatColor.LIGHT_PURPLE + ", shulker deep compares: " + ChatColor.WHITE + stats.getShulkerDeepCompares()
+                + ChatColor.LIGHT_PURPLE + ", merged groups: " + ChatColor.WHITE + stats.getMergedGroups());
+        sender.sendMessage(ChatColor.LIGHT_PURPLE + "Stale commits: " + ChatColor.WHITE + stats.getStaleCommits()
+                + ChatColor.LIGHT_PURPLE + ", blocked uses: " + ChatColor.WHITE + stats.getBlockedUses()
+                + ChatColor.LIGHT_PURPLE + ", errors: " + ChatColor.WHITE + stats.getErrors());
+
+        String[] phases = stats.getPhaseSummaries();
+        if (phases.length == 0) {
+            sender.sendMessage(ChatColor.LIGHT_PURPLE + "No timings recorded yet.");
+        }
+        for (String line : phases) {
+            sender.sendMessage(ChatColor.WHITE + line);
+        }
+        return true;
     }
 
     /**
-     * Check if two items can be stacked together
-     * Included durability checker
+     * /stack bench [iterations]: time the merge engine on synthetic item sets, with its own stats
+     * Runs on a worker, results come back to the sender when done
      */
-    private boolean canStack(ItemStack item1, ItemStack item2) {
-        if (item1 == null || item2 == null) return false;
-        if (item1.getType() != item2.getType()) return false;
-        if (!item1.isSimilar(item2)) return false;
+    private boolean bench(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("simplestacker.admin")) {
+            sender.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "You don't have permission to use this command!");
+            return true;
+        }
 
-        // NEW: Check durability - must be EXACTLY the same
-        if (!durabilityMatches(item1, item2)) return false;
+        int iterations = DEFAULT_BENCH_ITERATIONS;
+        if (args.length > 1) {
+            try {
+                iterations = Math.max(1, Integer.parseInt(args[1]));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(ChatColor.RED + "Usage: /stack bench [iterations]");
+                return true;
+            }
+        }
 
-        // Additional check for shulker boxes
-        if (isShulkerBox(item1)) {
-            return shulkerContentsMatch(item1, item2);
+        if (iterations > StackBenchmark.MAX_ITERATIONS) {
+            sender.sendMessage(ChatColor.RED + "At most " + StackBenchmark.MAX_ITERATIONS + " iterations!");
+            return true;
         }
 
+        int runs = iterations;
+        Player player = sender instanceof Player p ? p : null;
+        StackBenchmark benchmark = new StackBenchmark(plugin);
+
+        sender.sendMessage(ChatColor.LIGHT_PURPLE + "Running benchmarks (" + runs + " iterations each)...");
+        Scheduling.runAsync(plugin, () -> {
+            List<String> lines = new ArrayList<>();
+            try {
+                for (StackBenchmark.Result result : benchmark.run(runs, player)) {
+                    lines.add(ChatColor.LIGHT_PURPLE + result.name() + ": " + ChatColor.WHITE
+                            + String.format("%.1f µs/op", result.nanosPerOp() / 1000)
+                            + (result.bytesPerOp() >= 0 ? String.format(", %,d B/op", result.bytesPerOp()) : ""));
+                }
+            } catch (Exception e) {
+                plugin.getLogger().warning("Benchmark failed: " + e.getMessage());
+                lines.add(ChatColor.RED + "Benchmark failed, check the console.");
+            }
+            Scheduling.runFor(plugin, sender, () -> lines.forEach(sender::sendMessage));
+        });
         return true;
     }
 
     /**
-     * New method: Check if two items have the exact same durability
+     * /stack simulate <players> [seconds] [commands/tick] [events/tick]: load test with simulated players
      */
-    private boolean durabilityMatches(ItemStack item1, ItemStack item2) {
-        ItemMeta meta1 = item1.getItemMeta();
-        ItemMeta meta2 = item2.getItemMeta();
+    private boolean simulate(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("simplestacker.admin")) {
+            sender.sendMessage(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "You don't have permission to use this command!");
+            return true;
+        }
 
-        // If neither has durability, they match
-        if (!(meta1 instanceof Damageable) && !(meta2 instanceof Damageable)) {
+        // Passes run on the requester's thread, like a real /stack
+        if (!(sender instanceof Player)) {
+            sender.sendMessage(ChatColor.RED + "Run /stack simulate in-game, simulated passes run on your thread!");
             return true;
         }
 
-        // If only one has durability, they don't match
-        if (!(meta1 instanceof Damageable) || !(meta2 instanceof Damageable)) {
-            return false;
+        Player player = (Player) sender;
+        int players;
+        int seconds;
+        int commandsPerTick;
+        int eventsPerTick;
+        try {
+            if (args.length < 2) throw new NumberFormatException();
+            players = Math.max(1, Integer.parseInt(args[1]));
+            seconds = args.length > 2 ? Math.max(1, Integer.parseInt(args[2])) : 10;
+            commandsPerTick = args.length > 3 ? Math.max(0, Integer.parseInt(args[3])) : Math.max(1, players / 20);
+            eventsPerTick = args.length > 4 ? Math.max(0, Integer.parseInt(args[4])) : commandsPerTick * 4;
+        } catch (NumberFormatException e) {
+            sender.sendMessage(ChatColor.RED + "Usage: /stack simulate <players> [seconds] [commands/tick] [events/tick]");
+            return true;
         }
 
-        // Both have durability - check if damage values are EXACTLY the same
-        Damageable dam1 = (Damageable) meta1;
-        Damageable dam2 = (Damageable) meta2;
+        if (players > LoadSimulation.MAX_PLAYERS) {
+            player.sendMessage(ChatColor.RED + "At most " + LoadSimulation.MAX_PLAYERS + " simulated players!");
+            return true;
+        }
 
-        return dam1.getDamage() == dam2.getDamage();
+        if (seconds > LoadSimulation.MAX_SECONDS) {
+            player.sendMessage(ChatColor.RED + "At most " + LoadSimulation.MAX_SECONDS + " seconds!");
+            return true;
+        }
+
+        if (commandsPerTick > LoadSimulation.MAX_PER_TICK || eventsPerTick > LoadSimulation.MAX_PER_TICK) {
+            player.sendMessage(ChatColor.RED + "At most " + LoadSimulation.MAX_PER_TICK + " commands or events per tick!");
+            return true;
+        }
+
+        if (!plugin.getLoadSimulation().start(player, players, seconds, commandsPerTick, eventsPerTick)) {
+            player.sendMessage(ChatColor.RED + "A simulation is already running!");
+            return true;
+        }
+
+        player.sendMessage(ChatColor.LIGHT_PURPLE + "Simulating " + players + " players for " + seconds + "s ("
+                + commandsPerTick + " /stack and " + eventsPerTick + " interacts per tick)...");
+        return true;
     }
 
     /**
-     * Check if an item is a shulker box
+     * Start a stacking pass for a player, within their rate limit
+     *
+     * @param slots storage slots to touch in ascending order, null for all of them
+     * @param sort  also order the slots by material (/stack sort)
      */
-    private boolean isShulkerBox(ItemStack item) {
-        if (item == null) return false;
-        String name = item.getType().name();
-        return name.endsWith("_SHULKER_BOX");
+    private void stack(Player player, Supplier<Inventory> target, int[] slots, boolean sort) {
+        pipeline.stack(player, player.getUniqueId(), target, slots, sort, new Feedback(player, sort));
     }
 
     /**
-     * Check if two shulker boxes have identical contents
+     * Safe stacking method for ensuring inventory doesn't clear
+     * Excludes armor equipped and offhand stuff
+     * Runs the whole pass on the calling thread, for callers already on the main thread
      */
-    private boolean shulkerContentsMatch(ItemStack shulker1, ItemStack shulker2) {
+    public int stackInventorySafe(Player player) {
+        PlayerInventory inventory = player.getInventory();
+        StackStats stats = plugin.getStats();
+        // One rule set for the whole pass, even if /stack reload lands meanwhile
+        StackRules rules = plugin.getItemHandler().getRules();
+
+        int stackedGroups;
+
         try {
-            if (!(shulker1.getItemMeta() instanceof BlockStateMeta)) return true;
-            if (!(shulker2.getItemMeta() instanceof BlockStateMeta)) return true;
+            // Read main inventory (0-35) once, armor and offhand are not storage slots
+            long start = System.nanoTime();
+            InventorySnapshot snapshot = InventorySnapshot.capture(inventory);
+            stats.record(StackStats.Phase.SNAPSHOT, start);
+
+            // Stamp the copies, then group similar items once and merge each group
+            stackedGroups = pipeline.plan(snapshot.getSlots(), rules, false);
+
+            // Write back only the changed slots, nothing if the inventory moved under us
+            start = System.nanoTime();
+            int written = snapshot.commit();
+            stats.record(StackStats.Phase.COMMIT, start);
+
+            if (written < 0) {
+                stats.countStaleCommit();
+                return 0;
+            }
 
-            BlockStateMeta meta1 = (BlockStateMeta) shulker1.getItemMeta();
-            BlockStateMeta meta2 = (BlockStateMeta) shulker2.getItemMeta();
+        } catch (Exception e) {
+            sendError(player, e);
+            return 0;
+        }
 
-            if (!(meta1.getBlockState() instanceof ShulkerBox)) return true;
-            if (!(meta2.getBlockState() instanceof ShulkerBox)) return true;
+        return stackedGroups;
+    }
 
-            ShulkerBox box1 = (ShulkerBox) meta1.getBlockState();
-            ShulkerBox box2 = (ShulkerBox) meta2.getBlockState();
+    /**
+     * Tells the player how their /stack went
+     */
+    private final class Feedback implements StackPipeline.Outcome {
+        private final Player player;
+        private final boolean sort;
 
-            ItemStack[] contents1 = box1.getInventory().getContents();
-            ItemStack[] contents2 = box2.getInventory().getContents();
+        Feedback(Player player, boolean sort) {
+            this.player = player;
+            this.sort = sort;
+        }
 
-            if (contents1.length != contents2.length) return false;
+        @Override
+        public void rateLimited() {
+            player.sendMessage(ChatColor.RED + "You're stacking too fast, wait a moment!");
+        }
 
-            for (int i = 0; i < contents1.length; i++) {
-                ItemStack c1 = contents1[i];
-                ItemStack c2 = contents2[i];
+        @Override
+        public void alreadyQueued() {
+            player.sendMessage(ChatColor.RED + "You already have a stack queued, wait a moment!");
+        }
 
-                if (c1 == null && c2 == null) continue;
-                if (c1 == null || c2 == null) return false;
-                if (!c1.equals(c2)) return false;
+        @Override
+        public void stacked(int transfers) {
+            if (sort) {
+                sendSortResult(player, transfers);
+            } else {
+                sendResult(player, transfers);
             }
+        }
 
-            return true;
-
-        } catch (Exception e) {
-            // If we can't compare, assume they don't match to be safe
-            return false;
+        @Override
+        public void failed(Exception e) {
+            sendError(player, e);
         }
     }
 }
@@ -0,0 +1,144 @@
+package net.stacking.simpleStacker.handlers;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.stacking.simpleStacker.SimpleStacker;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Stacks many players' inventories spread over several ticks
+ * Each tick only hands out as many players as fit in the millisecond budget,
+ * based on a running average of how long one player takes
+ */
+public class BulkStackQueue {
+
+    // Progress message every 5 seconds while a batch is running
+    private static final int PROGRESS_INTERVAL_TICKS = 100;
+
+    private final SimpleStacker plugin;
+    private final ToIntFunction<Player> stacker;
+    // Start with a guess of 0.2ms per player, corrected as players are processed
+    private final TickBudget budget;
+
+    // Guarded by this
+    private final Set<UUID> queued = new LinkedHashSet<>();
+    private final List<CommandSender> requesters = new ArrayList<>();
+    private ScheduledTask task;
+    private int total;
+    private int ticks;
+
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicLong groups = new AtomicLong();
+
+    public BulkStackQueue(SimpleStacker plugin, ToIntFunction<Player> stacker, double budgetMillis) {
+        this.plugin = plugin;
+        this.stacker = stacker;
+        this.budget = new TickBudget(budgetMillis, 200_000);
+    }
+
+    /**
+     * Queue players for stacking, players already waiting are not queued twice
+     *
+     * @return number of players that were actually added
+     */
+    public synchronized int enqueue(CommandSender requester, Iterable<? extends Player> players) {
+        int added = 0;
+        for (Player player : players) {
+            if (queued.add(player.getUniqueId())) added++;
+        }
+
+        if (!requesters.contains(requester)) requesters.add(requester);
+        total += added;
+
+        if (task == null && !queued.isEmpty()) {
+            ticks = 0;
+            task = Scheduling.runGlobalTimer(plugin, this::tick, 1);
+        }
+        return added;
+    }
+
+    public synchronized void cancel() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queued.clear();
+    }
+
+    private synchronized void tick() {
+        // Players still waiting on their own thread count against this tick's budget
+        int slots = budget.slots();
+
+        Iterator<UUID> it = queued.iterator();
+        while (slots > 0 && it.hasNext()) {
+            UUID id = it.next();
+            it.remove();
+
+            Player player = Bukkit.getPlayer(id);
+            if (player == null || !player.isOnline()) {
+                done.incrementAndGet();
+                continue;
+            }
+
+            budget.start();
+            slots--;
+            Scheduling.runFor(plugin, player, () -> process(player), this::skipOne);
+        }
+
+        ticks++;
+        if (queued.isEmpty() && budget.inFlight() == 0) {
+            finish();
+        } else if (ticks % PROGRESS_INTERVAL_TICKS == 0) {
+            notifyRequesters(ChatColor.LIGHT_PURPLE + "Stacking inventories: " + done.get() + "/" + total + " players done...");
+        }
+    }
+
+    private void process(Player player) {
+        long start = System.nanoTime();
+        try {
+            groups.addAndGet(stacker.applyAsInt(player));
+        } finally {
+            done.incrementAndGet();
+            budget.finish(start);
+        }
+    }
+
+    /**
+     * The player left before their turn came
+     */
+    private void skipOne() {
+        done.incrementAndGet();
+        budget.abandon();
+    }
+
+    private void finish() {
+        task.cancel();
+        task = null;
+
+        notifyRequesters(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✓ " + ChatColor.LIGHT_PURPLE
+                + "Stacked " + done.get() + " player inventories (" + groups.get() + " item group(s))!");
+
+        requesters.clear();
+        total = 0;
+        done.set(0);
+        groups.set(0);
+    }
+
+    private void notifyRequesters(String message) {
+        for (CommandSender sender : requesters) {
+            Scheduling.runFor(plugin, sender, () -> sender.sendMessage(message));
+        }
+    }
+}
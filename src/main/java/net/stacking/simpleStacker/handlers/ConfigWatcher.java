@@ -0,0 +1,92 @@
+package net.stacking.simpleStacker.handlers;
+
+import net.stacking.simpleStacker.SimpleStacker;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches config.yml and reloads stack rules after it has been quiet for a while
+ * Editors often write a file several times per save, hence the debounce
+ */
+public class ConfigWatcher implements Runnable {
+
+    private final SimpleStacker plugin;
+    private final long debounceMillis;
+    private WatchService watchService;
+    private Thread thread;
+
+    public ConfigWatcher(SimpleStacker plugin, long debounceMillis) {
+        this.plugin = plugin;
+        this.debounceMillis = Math.max(100, debounceMillis);
+    }
+
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            plugin.getDataFolder().toPath().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not watch config.yml for changes: " + e.getMessage());
+            return;
+        }
+
+        thread = new Thread(this, "SimpleStacker-ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Ignore, we are shutting down
+            }
+            watchService = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        WatchService service = watchService;
+        long changedAt = 0;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object context = event.context();
+                        if (context instanceof Path path && path.toString().equals("config.yml")) {
+                            changedAt = System.currentTimeMillis();
+                        }
+                    }
+                    key.reset();
+                }
+
+                // Only reload once the file stopped changing
+                if (changedAt != 0 && System.currentTimeMillis() - changedAt >= debounceMillis) {
+                    changedAt = 0;
+                    plugin.getLogger().info("config.yml changed, reloading stack rules...");
+                    plugin.getItemHandler().reloadAsync(null);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package net.stacking.simpleStacker.handlers;
+
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.inventory.EquipmentSlot;
+
+/**
+ * Empty-handed right-click fired by /stack container to ask protection plugins for access
+ * Nobody actually clicked, so our own listeners skip it
+ */
+public class ContainerAccessCheck extends PlayerInteractEvent {
+
+    public ContainerAccessCheck(Player player, Block block, BlockFace face) {
+        super(player, Action.RIGHT_CLICK_BLOCK, null, block, face, EquipmentSlot.HAND);
+    }
+}
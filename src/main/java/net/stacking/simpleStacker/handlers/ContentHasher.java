@@ -0,0 +1,108 @@
+package net.stacking.simpleStacker.handlers;
+
+import io.papermc.paper.datacomponent.DataComponentTypes;
+import io.papermc.paper.datacomponent.item.BundleContents;
+import io.papermc.paper.datacomponent.item.ItemContainerContents;
+import org.bukkit.inventory.ItemStack;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Structural digest of what a shulker box or bundle holds
+ * Nested shulkers and bundles are walked instead of serialized whole,
+ * so every item in the tree is read once however deep it sits
+ */
+public final class ContentHasher {
+
+    // Deeper than this, nested containers are hashed from their full serialized form
+    private static final int MAX_DEPTH = 4;
+
+    private static final byte PLAIN = 0;
+    private static final byte NESTED = 1;
+    private static final byte NESTED_END = 2;
+
+    private ContentHasher() {
+    }
+
+    /**
+     * Check if an item stores other items (shulker box or bundle)
+     */
+    public static boolean isContainer(ItemStack item) {
+        return item != null && MaterialTraits.has(item.getType(), MaterialTraits.SHULKER_BOX | MaterialTraits.BUNDLE);
+    }
+
+    /**
+     * Digest of a container item's contents, same contents always give the same value
+     *
+     * @return the digest, or null if it couldn't be computed
+     */
+    public static Long digest(ItemStack container) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            walk(container, digest, 0);
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void walk(ItemStack container, MessageDigest digest, int depth) {
+        List<ItemStack> contents = contentsOf(container);
+
+        for (int i = 0; i < contents.size(); i++) {
+            ItemStack content = slotAt(contents, i);
+            if (content == null) continue;
+
+            // Slot index is part of the hash, same items in other slots are different contents
+            digest.update(ByteBuffer.allocate(4).putInt(i).array());
+
+            if (depth < MAX_DEPTH && isContainer(content)) {
+                // The box or bundle itself without its contents, then its contents one level down
+                digest.update(NESTED);
+                digest.update(withoutContents(content).serializeAsBytes());
+                walk(content, digest, depth + 1);
+                digest.update(NESTED_END);
+            } else {
+                digest.update(PLAIN);
+                digest.update(content.serializeAsBytes());
+            }
+        }
+    }
+
+    /**
+     * Items stored in a shulker box or bundle, empty list for anything else
+     */
+    public static List<ItemStack> contentsOf(ItemStack item) {
+        if (MaterialTraits.has(item.getType(), MaterialTraits.SHULKER_BOX)) {
+            ItemContainerContents container = item.getData(DataComponentTypes.CONTAINER);
+            return container == null ? List.of() : container.contents();
+        }
+        if (MaterialTraits.has(item.getType(), MaterialTraits.BUNDLE)) {
+            BundleContents bundle = item.getData(DataComponentTypes.BUNDLE_CONTENTS);
+            return bundle == null ? List.of() : bundle.contents();
+        }
+        return List.of();
+    }
+
+    /**
+     * Item at a container index, null for empty or missing slots
+     */
+    public static ItemStack slotAt(List<ItemStack> contents, int index) {
+        if (index >= contents.size()) return null;
+        ItemStack item = contents.get(index);
+        return item == null || item.getType().isAir() ? null : item;
+    }
+
+    private static ItemStack withoutContents(ItemStack item) {
+        ItemStack copy = item.clone();
+        if (MaterialTraits.has(copy.getType(), MaterialTraits.SHULKER_BOX)) {
+            copy.unsetData(DataComponentTypes.CONTAINER);
+        } else {
+            copy.unsetData(DataComponentTypes.BUNDLE_CONTENTS);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,65 @@
+package net.stacking.simpleStacker.handlers;
+
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which players hold a stacked damageable item, per hand
+ * Kept up to date from held slot, swap and slot change events, so checks don't read the inventory
+ */
+public class HeldItemState {
+
+    private final Set<UUID> mainHand = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> offHand = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Check if item is stacked (amount > 1) and damageable
+     */
+    public static boolean isStackedDamageable(ItemStack item) {
+        return item != null && item.getAmount() > 1 && MaterialTraits.has(item.getType(), MaterialTraits.DAMAGEABLE);
+    }
+
+    public boolean inMainHand(Player player) {
+        // Almost nobody holds a stacked tool, skip the hash lookup then
+        return !mainHand.isEmpty() && mainHand.contains(player.getUniqueId());
+    }
+
+    public boolean inOffHand(Player player) {
+        return !offHand.isEmpty() && offHand.contains(player.getUniqueId());
+    }
+
+    public void setMainHand(UUID player, ItemStack item) {
+        update(mainHand, player, item);
+    }
+
+    public void setOffHand(UUID player, ItemStack item) {
+        update(offHand, player, item);
+    }
+
+    /**
+     * Read both hands again, only from the player's own thread
+     */
+    public void refresh(Player player) {
+        PlayerInventory inventory = player.getInventory();
+        setMainHand(player.getUniqueId(), inventory.getItemInMainHand());
+        setOffHand(player.getUniqueId(), inventory.getItemInOffHand());
+    }
+
+    public void forget(UUID player) {
+        mainHand.remove(player);
+        offHand.remove(player);
+    }
+
+    private static void update(Set<UUID> holders, UUID player, ItemStack item) {
+        if (isStackedDamageable(item)) {
+            holders.add(player);
+        } else {
+            holders.remove(player);
+        }
+    }
+}
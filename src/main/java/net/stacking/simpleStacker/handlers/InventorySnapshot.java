@@ -0,0 +1,113 @@
+package net.stacking.simpleStacker.handlers;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Objects;
+
+/**
+ * Copy of an inventory's storage slots that can be edited freely
+ * and written back in one step
+ */
+public final class InventorySnapshot {
+
+    private final Inventory inventory;
+    // Inventory slot for each array index, null when the arrays cover every storage slot
+    private final int[] slots;
+    private final ItemStack[] original;
+    private final ItemStack[] working;
+
+    private InventorySnapshot(Inventory inventory, int[] slots, ItemStack[] original, ItemStack[] working) {
+        this.inventory = inventory;
+        this.slots = slots;
+        this.original = original;
+        this.working = working;
+    }
+
+    /**
+     * Read the storage slots once (0-35 for a player, no armor or offhand)
+     */
+    public static InventorySnapshot capture(Inventory inventory) {
+        ItemStack[] live = inventory.getStorageContents();
+        ItemStack[] original = new ItemStack[live.length];
+        ItemStack[] working = new ItemStack[live.length];
+
+        for (int i = 0; i < live.length; i++) {
+            copy(live[i], original, working, i);
+        }
+
+        return new InventorySnapshot(inventory, null, original, working);
+    }
+
+    /**
+     * Read only some storage slots, given in ascending order
+     * Index i of getSlots() is inventory slot slots[i]
+     */
+    public static InventorySnapshot capture(Inventory inventory, int[] slots) {
+        ItemStack[] live = inventory.getStorageContents();
+        ItemStack[] original = new ItemStack[slots.length];
+        ItemStack[] working = new ItemStack[slots.length];
+
+        for (int i = 0; i < slots.length; i++) {
+            copy(live[slots[i]], original, working, i);
+        }
+
+        return new InventorySnapshot(inventory, slots.clone(), original, working);
+    }
+
+    private static void copy(ItemStack item, ItemStack[] original, ItemStack[] working, int index) {
+        if (item == null || item.getType().isAir()) return;
+
+        // getStorageContents hands out mirrors, so take our own copies
+        original[index] = item.clone();
+        working[index] = item.clone();
+    }
+
+    /**
+     * Slots to edit, emptied slots should be set to null
+     */
+    public ItemStack[] getSlots() {
+        return working;
+    }
+
+    /**
+     * Check that nobody touched the inventory since the snapshot was taken
+     */
+    public boolean isCurrent() {
+        ItemStack[] live = inventory.getStorageContents();
+        if (slots == null && live.length != original.length) return false;
+
+        for (int i = 0; i < original.length; i++) {
+            int slot = slotAt(i);
+            if (slot >= live.length) return false;
+
+            ItemStack item = live[slot];
+            if (item != null && item.getType().isAir()) item = null;
+            if (!Objects.equals(item, original[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write back only the slots that changed
+     * Does nothing if the inventory changed in the meantime
+     *
+     * @return number of slots written, or -1 if the snapshot was stale
+     */
+    public int commit() {
+        if (!isCurrent()) return -1;
+
+        int written = 0;
+        for (int i = 0; i < working.length; i++) {
+            if (Objects.equals(working[i], original[i])) continue;
+
+            inventory.setItem(slotAt(i), working[i]);
+            written++;
+        }
+        return written;
+    }
+
+    private int slotAt(int index) {
+        return slots == null ? index : slots[index];
+    }
+}
@@ -0,0 +1,254 @@
+package net.stacking.simpleStacker.handlers;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.stacking.simpleStacker.SimpleStacker;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Item;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges dropped item entities up to the configured stack sizes
+ * New items are batched per radius-sized cell as they spawn, a cell is merged a few ticks after
+ * its last new item and then forgotten, and only as many cells as fit in the tick budget are handled per tick
+ * Older items are found through the world's own entity lookup, so nothing is kept between batches
+ */
+public class ItemConsolidator {
+
+    // Pickup delay vanilla uses for items that can never be picked up
+    private static final int NEVER_PICKUP = 32767;
+
+    private final SimpleStacker plugin;
+    private final double radius;
+    private final double radiusSquared;
+    // Cells are 2^cellShift blocks wide, at most a chunk so a cell never spans two chunks
+    private final int cellShift;
+    private final long delayTicks;
+    // Start with a guess of 0.05ms per cell, corrected as cells are processed
+    private final TickBudget budget;
+
+    private final Map<CellKey, Cell> cells = new ConcurrentHashMap<>();
+    private final Queue<Cell> ready = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong ticks = new AtomicLong();
+    private ScheduledTask task;
+
+    public ItemConsolidator(SimpleStacker plugin, double radius, long delayTicks, double budgetMillis) {
+        this.plugin = plugin;
+        this.radius = radius;
+        this.radiusSquared = radius * radius;
+        this.delayTicks = Math.max(1, delayTicks);
+        this.budget = new TickBudget(budgetMillis, 50_000);
+
+        int shift = 0;
+        while (shift < 4 && (1 << shift) < radius) shift++;
+        this.cellShift = shift;
+    }
+
+    public void start() {
+        task = Scheduling.runGlobalTimer(plugin, this::tick, 1);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        cells.clear();
+        ready.clear();
+    }
+
+    /**
+     * Add a freshly spawned item to its cell and queue the cell if it isn't already
+     */
+    public void track(Item item) {
+        Location location = item.getLocation();
+        CellKey key = new CellKey(location.getWorld().getUID(),
+                location.getBlockX() >> cellShift, location.getBlockZ() >> cellShift);
+
+        cells.compute(key, (k, cell) -> {
+            if (cell == null) cell = new Cell(k);
+            cell.items.add(item);
+
+            // More items keep landing in the same cell, wait for them instead of merging twice
+            if (!cell.queued) {
+                cell.queued = true;
+                cell.readyAt = ticks.get() + delayTicks;
+                ready.add(cell);
+            }
+            return cell;
+        });
+    }
+
+    /**
+     * Drop pending cells of an unloaded chunk, their items are gone with it
+     */
+    public void forgetChunk(UUID world, int chunkX, int chunkZ) {
+        int shift = 4 - cellShift;
+        cells.keySet().removeIf(key -> key.world().equals(world)
+                && key.x() >> shift == chunkX && key.z() >> shift == chunkZ);
+    }
+
+    private void tick() {
+        long now = ticks.incrementAndGet();
+
+        // Cells still being merged on their own thread count against this tick's budget
+        int slots = budget.slots();
+
+        while (slots > 0) {
+            Cell cell = ready.peek();
+            if (cell == null || cell.readyAt > now) break;
+            ready.poll();
+
+            // Forgotten with its chunk
+            if (cells.get(cell.key) != cell) continue;
+
+            World world = Bukkit.getWorld(cell.key.world());
+            if (world == null) {
+                cells.remove(cell.key, cell);
+                continue;
+            }
+
+            slots--;
+            budget.start();
+            int shift = 4 - cellShift;
+            Scheduling.runAt(plugin, world, cell.key.x() >> shift, cell.key.z() >> shift, () -> process(cell));
+        }
+    }
+
+    private void process(Cell cell) {
+        long start = System.nanoTime();
+        try {
+            // Take the batch and forget the cell, later drops start a new one
+            List<Item> items = new ArrayList<>();
+            cells.computeIfPresent(cell.key, (k, current) -> {
+                if (current != cell) return current;
+                items.addAll(current.items);
+                return null;
+            });
+
+            merge(items);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Item merging failed: " + e.getMessage());
+        } finally {
+            budget.finish(start);
+        }
+    }
+
+    /**
+     * Merge each new item into compatible earlier items within the radius
+     * Earlier means older, or spawned first in the same tick, so stacks only ever move one way
+     * Same canStack and target size rules as /stack, and only items vanilla would merge as well
+     * Every item is prepared and keyed at most once per batch, and only when it has the right type
+     */
+    private void merge(List<Item> items) {
+        StackEngine engine = plugin.getStackEngine();
+        StackRules rules = plugin.getItemHandler().getRules();
+
+        Map<UUID, Entry> entries = new LinkedHashMap<>();
+
+        for (Item item : items) {
+            if (!canMerge(item)) continue;
+
+            Entry entry = entries.computeIfAbsent(item.getUniqueId(), id -> entryOf(item, entries.size(), engine, rules));
+            if (entry.stack.getAmount() <= 0) continue;
+
+            for (Item other : item.getWorld().getNearbyEntitiesByType(Item.class, entry.location, radius)) {
+                if (entry.stack.getAmount() <= 0) break;
+                if (other == item || !canMerge(other)) continue;
+                if (!Objects.equals(other.getOwner(), item.getOwner())) continue;
+
+                Entry receiver = entries.get(other.getUniqueId());
+                if (receiver == null) {
+                    if (other.getItemStack().getType() != entry.stack.getType()) continue;
+                    receiver = entryOf(other, entries.size(), engine, rules);
+                    entries.put(other.getUniqueId(), receiver);
+                }
+
+                if (!receiver.isBefore(entry)) continue;
+                if (receiver.stack.getAmount() <= 0) continue;
+                if (receiver.stack.getType() != entry.stack.getType()) continue;
+                if (receiver.location.distanceSquared(entry.location) > radiusSquared) continue;
+
+                int spaceLeft = engine.getTargetMaxStack(receiver.stack, rules) - receiver.stack.getAmount();
+                if (spaceLeft <= 0) continue;
+                if (!engine.canStack(receiver.key, entry.key)) continue;
+
+                int transferAmount = Math.min(spaceLeft, entry.stack.getAmount());
+                receiver.stack.setAmount(receiver.stack.getAmount() + transferAmount);
+                entry.stack.setAmount(entry.stack.getAmount() - transferAmount);
+            }
+        }
+
+        for (Entry entry : entries.values()) {
+            if (entry.stack.getAmount() <= 0) {
+                entry.item.remove();
+                continue;
+            }
+
+            // Only send an entity update when something actually changed
+            if (!entry.stack.equals(entry.original)) {
+                entry.item.setItemStack(entry.stack);
+            }
+        }
+    }
+
+    /**
+     * Items vanilla leaves alone: display and shop items that can never be picked up or never despawn
+     * Also skips items picked up, despawned, or wandered into another region
+     */
+    private static boolean canMerge(Item item) {
+        return item.isValid()
+                && Bukkit.isOwnedByCurrentRegion(item)
+                && item.getPickupDelay() < NEVER_PICKUP
+                && item.canPlayerPickup()
+                && !item.isUnlimitedLifetime();
+    }
+
+    private Entry entryOf(Item item, int order, StackEngine engine, StackRules rules) {
+        ItemStack original = item.getItemStack();
+        ItemStack stack = original.clone();
+        engine.prepare(stack, rules);
+        return new Entry(item, original, stack, engine.keyOf(stack), item.getLocation(), item.getTicksLived(), order);
+    }
+
+    private record CellKey(UUID world, int x, int z) {
+    }
+
+    /**
+     * New items in one cell waiting to be merged, only touched inside cells.compute
+     */
+    private static final class Cell {
+        private final CellKey key;
+        private final List<Item> items = new ArrayList<>();
+        private boolean queued;
+        private long readyAt;
+
+        Cell(CellKey key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * @param age   ticks lived when the batch started
+     * @param order position in the batch, breaks ties between items of the same age
+     */
+    private record Entry(Item item, ItemStack original, ItemStack stack, StackKey key, Location location, int age, int order) {
+
+        boolean isBefore(Entry other) {
+            return age != other.age ? age > other.age : order < other.order;
+        }
+    }
+}
@@ -3,14 +3,20 @@ package net.stacking.simpleStacker.handlers;
 import net.stacking.simpleStacker.SimpleStacker;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
 
-import java.util.HashMap;
+import java.io.File;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 public class ItemHandler {
 
-    private final Map<Material, Integer> targets = new HashMap<>();
+    // Swapped as a whole on (re)load, readers grab one StackRules and keep it for the whole pass
+    // StackRules never changes after compile, so any region thread can read it without locking
+    private final AtomicReference<StackRules> rules = new AtomicReference<>(StackRules.EMPTY);
+    private final Object reloadLock = new Object();
 
     public void loadStackSizes() {
         Logger log = SimpleStacker.getInstance().getLogger();
@@ -21,33 +27,68 @@ public class ItemHandler {
             return;
         }
 
-        int success = 0, invalid = 0;
+        StackRules loaded = StackRules.compile(itemsSection, log);
+        rules.set(loaded);
 
-        for (String materialName : itemsSection.getKeys(false)) {
-            int stackSize = itemsSection.getInt(materialName);
+        log.info("Loaded " + loaded.size() + " stack rules, " + loaded.getInvalid() + " invalid.");
+    }
 
-            Material material = Material.matchMaterial(materialName);
-            if (material == null) {
-                log.fine("Unknown material (skipping): " + materialName);
-                invalid++;
-                continue;
-            }
+    /**
+     * Re-read config.yml off the tick threads and swap in the new rules
+     * The callback runs on the worker thread with a summary, or null if the reload failed
+     */
+    public void reloadAsync(Consumer<String> callback) {
+        SimpleStacker plugin = SimpleStacker.getInstance();
 
-            if (stackSize < 1 || stackSize > 99) {
-                log.fine("Invalid stack size " + stackSize + " for " + material + " (must be 1..99) - skipping");
-                invalid++;
-                continue;
+        Scheduling.runAsync(plugin, () -> {
+            String summary = reload(plugin);
+            if (callback != null && plugin.isEnabled()) {
+                callback.accept(summary);
             }
+        });
+    }
+
+    private String reload(SimpleStacker plugin) {
+        Logger log = plugin.getLogger();
+
+        synchronized (reloadLock) {
+            try {
+                File file = new File(plugin.getDataFolder(), "config.yml");
+                ConfigurationSection itemsSection = YamlConfiguration.loadConfiguration(file).getConfigurationSection("items");
+
+                if (itemsSection == null) {
+                    log.warning("Reload failed: no items section found in config! Keeping current rules.");
+                    return null;
+                }
 
-            // Removed durability check - Now damageable items can stack!
-            targets.put(material, stackSize);
-            success++;
+                StackRules fresh = StackRules.compile(itemsSection, log);
+                StackRules previous = rules.getAndSet(fresh);
+
+                String summary = fresh.describeChanges(previous);
+                log.info("Reloaded " + summary);
+
+                // Damageable items may have gained or lost their rules
+                if (plugin.isEnabled()) Scheduling.runGlobal(plugin, plugin::updateDurabilityGuard);
+                return summary;
+
+            } catch (Exception e) {
+                log.severe("Reload failed, keeping current rules: " + e.getMessage());
+                return null;
+            }
         }
+    }
 
-        log.info("Loaded " + success + " stack rules, " + invalid + " invalid.");
+    /**
+     * Current rule set, stays valid even if a reload happens afterwards
+     */
+    public StackRules getRules() {
+        return rules.get();
     }
 
+    /**
+     * Read-only view of the rules, kept for older callers
+     */
     public Map<Material, Integer> getTargets() {
-        return targets;
+        return rules.get().asMap();
     }
 }
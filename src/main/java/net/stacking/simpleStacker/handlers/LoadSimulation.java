@@ -0,0 +1,284 @@
+package net.stacking.simpleStacker.handlers;
+
+import io.papermc.paper.datacomponent.DataComponentTypes;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.stacking.simpleStacker.SimpleStacker;
+import net.stacking.simpleStacker.listeners.DurabilityUsageListener;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Load test for /stack with many simulated players, started in-game with /stack simulate
+ * Each simulated player is a scratch inventory filled with random items from the stack rules and its own
+ * rate limit key, built a batch per tick before the run starts
+ * Commands go through the real /stack pipeline (rate limiter, worker plan, commit on the requester's
+ * scheduler, stale retry), so a pass that never ends shows up in the report
+ * Uses its own engine, stats and limiter, so runs never show up in /stack stats, JMX or JFR
+ */
+public class LoadSimulation {
+
+    // Same size as a player's main inventory
+    private static final int SLOTS = 36;
+    public static final int MAX_PLAYERS = 1000;
+    public static final int MAX_SECONDS = 300;
+    // For commands and for interact events
+    public static final int MAX_PER_TICK = 1000;
+    // Scratch inventories made per tick while setting up
+    private static final int INVENTORIES_PER_TICK = 50;
+    // How long to wait for passes still running after the last command, 30 seconds
+    private static final int DRAIN_TICKS = 600;
+    // Used when the config has no stack rules to draw from
+    private static final List<Material> FALLBACK_MATERIALS = List.of(
+            Material.COBBLESTONE, Material.OAK_LOG, Material.POTION, Material.ENDER_PEARL,
+            Material.DIAMOND_PICKAXE, Material.IRON_SWORD, Material.BOW, Material.SHULKER_BOX
+    );
+
+    private final SimpleStacker plugin;
+    private final Random random = new Random();
+    private final Tally tally = new Tally();
+
+    // Read by passes on other threads, a cancelled run hands them no inventory
+    private volatile boolean running;
+
+    // Guarded by this
+    private ScheduledTask task;
+    private Player requester;
+    private DurabilityUsageListener listener;
+    private StackStats stats;
+    private StackPipeline pipeline;
+    private LatencyHistogram tickTimes;
+    private Inventory[] inventories;
+    private UUID[] keys;
+    private int built;
+    private List<Material> materials;
+    private int ticksLeft;
+    private int drainLeft;
+    private int commandsPerTick;
+    private int eventsPerTick;
+    private int ticks;
+    private int issued;
+    private int stacked;
+    private int rateLimited;
+    private int alreadyQueued;
+    private int failed;
+
+    public LoadSimulation(SimpleStacker plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start a run on the requester's thread, it ends early if they log out
+     *
+     * @param players         at most MAX_PLAYERS
+     * @param seconds         at most MAX_SECONDS
+     * @param commandsPerTick at most MAX_PER_TICK
+     * @param eventsPerTick   at most MAX_PER_TICK
+     * @return false if a run is already going
+     */
+    public synchronized boolean start(Player requester, int players, int seconds, int commandsPerTick, int eventsPerTick) {
+        if (task != null) return false;
+
+        this.requester = requester;
+        this.listener = new DurabilityUsageListener(plugin, new StackStats(), new UsageNotifier(plugin, 0));
+        this.stats = new StackStats();
+        this.pipeline = new StackPipeline(plugin, new StackEngine(new ShulkerFingerprint(plugin), stats), stats,
+                StackRateLimiter.fromConfig(plugin));
+        this.tickTimes = new LatencyHistogram();
+        this.commandsPerTick = Math.min(commandsPerTick, MAX_PER_TICK);
+        this.eventsPerTick = Math.min(eventsPerTick, MAX_PER_TICK);
+        this.ticksLeft = Math.min(seconds, MAX_SECONDS) * 20;
+        this.drainLeft = DRAIN_TICKS;
+        this.ticks = 0;
+        this.issued = 0;
+        this.stacked = 0;
+        this.rateLimited = 0;
+        this.alreadyQueued = 0;
+        this.failed = 0;
+
+        this.materials = materials();
+        this.inventories = new Inventory[Math.min(players, MAX_PLAYERS)];
+        this.keys = new UUID[inventories.length];
+        this.built = 0;
+        this.running = true;
+
+        task = Scheduling.runForTimer(plugin, requester, this::tick, this::cancel, 1);
+        return true;
+    }
+
+    public synchronized void cancel() {
+        running = false;
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        inventories = null;
+        keys = null;
+        materials = null;
+        pipeline = null;
+        requester = null;
+    }
+
+    private synchronized void tick() {
+        if (inventories == null) return;
+
+        // Setup ticks aren't measured
+        if (built < inventories.length) {
+            int end = Math.min(inventories.length, built + INVENTORIES_PER_TICK);
+            for (; built < end; built++) {
+                inventories[built] = Bukkit.createInventory(null, SLOTS);
+                inventories[built].setStorageContents(randomContents(materials));
+                keys[built] = UUID.randomUUID();
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        if (ticksLeft > 0) {
+            for (int i = 0; i < commandsPerTick; i++) {
+                issue(random.nextInt(inventories.length));
+            }
+            for (int i = 0; i < eventsPerTick; i++) {
+                interact(inventories[random.nextInt(inventories.length)]);
+            }
+            ticksLeft--;
+        } else {
+            drainLeft--;
+        }
+        tickTimes.record(System.nanoTime() - start);
+        ticks++;
+
+        int ended = stacked + rateLimited + alreadyQueued + failed;
+        if (ticksLeft == 0 && (ended == issued || drainLeft <= 0)) {
+            finish(issued - ended);
+        }
+    }
+
+    /**
+     * One simulated /stack through the real pipeline, keyed like a separate player
+     */
+    private void issue(int player) {
+        Inventory inventory = inventories[player];
+        issued++;
+        pipeline.stack(requester, keys[player], () -> running ? inventory : null, null, false, tally);
+    }
+
+    /**
+     * A right-click with a random item from the inventory
+     * Single items only, so the listener runs its checks without cancelling or messaging anyone
+     */
+    private void interact(Inventory inventory) {
+        ItemStack item = inventory.getItem(random.nextInt(SLOTS));
+        if (item != null) {
+            item = item.clone();
+            item.setAmount(1);
+        }
+        listener.onPlayerInteract(new PlayerInteractEvent(requester, Action.RIGHT_CLICK_AIR, item, null, null));
+    }
+
+    /**
+     * @param unfinished passes that never reported back within the drain time
+     */
+    private void finish(int unfinished) {
+        LatencyHistogram latency = stats.getHistogram(StackStats.Phase.COMMAND);
+        LatencyHistogram commit = stats.getHistogram(StackStats.Phase.COMMIT);
+
+        List<String> lines = new ArrayList<>();
+        lines.add(ChatColor.DARK_PURPLE + "" + ChatColor.BOLD + "✓ " + ChatColor.LIGHT_PURPLE
+                + "Simulated " + inventories.length + " players over " + ticks + " ticks, " + issued + " stack commands");
+        lines.add(ChatColor.LIGHT_PURPLE + "Outcomes: " + ChatColor.WHITE
+                + stacked + " stacked (" + stats.getStaleCommits() + " stale commits), "
+                + rateLimited + " rate limited, " + alreadyQueued + " already queued, " + failed + " failed");
+        if (unfinished > 0) {
+            lines.add(ChatColor.RED + "" + unfinished + " passes never finished!");
+        }
+        lines.add(ChatColor.LIGHT_PURPLE + "Tick thread: " + ChatColor.WHITE
+                + String.format("avg %.3f ms, p99 %.3f ms, max %.3f ms, commit p99 %.3f ms",
+                millis((long) tickTimes.getMean()), millis(tickTimes.getPercentile(0.99)), millis(tickTimes.getMax()),
+                millis(commit.getPercentile(0.99))));
+        lines.add(ChatColor.LIGHT_PURPLE + "Command latency: " + ChatColor.WHITE
+                + String.format("p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms",
+                millis(latency.getPercentile(0.5)), millis(latency.getPercentile(0.95)),
+                millis(latency.getPercentile(0.99)), millis(latency.getMax())));
+
+        // Already on the requester's thread
+        lines.forEach(requester::sendMessage);
+        cancel();
+    }
+
+    private List<Material> materials() {
+        List<Material> materials = new ArrayList<>();
+        for (Material material : plugin.getItemHandler().getTargets().keySet()) {
+            if (material.isItem() && !material.isAir()) materials.add(material);
+        }
+        return materials.isEmpty() ? FALLBACK_MATERIALS : materials;
+    }
+
+    /**
+     * Most slots filled, duplicates and partial stacks come from drawing with replacement
+     */
+    private ItemStack[] randomContents(List<Material> materials) {
+        ItemStack[] slots = new ItemStack[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            if (random.nextInt(5) == 0) continue;
+
+            Material material = materials.get(random.nextInt(materials.size()));
+            ItemStack item = new ItemStack(material, 1 + random.nextInt(material.getMaxStackSize()));
+            if (MaterialTraits.has(material, MaterialTraits.DAMAGEABLE)) {
+                item.setData(DataComponentTypes.DAMAGE, random.nextInt(3) * 10);
+            }
+            slots[i] = item;
+        }
+        return slots;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Counts how simulated passes ended
+     */
+    private final class Tally implements StackPipeline.Outcome {
+
+        @Override
+        public void rateLimited() {
+            synchronized (LoadSimulation.this) {
+                rateLimited++;
+            }
+        }
+
+        @Override
+        public void alreadyQueued() {
+            synchronized (LoadSimulation.this) {
+                alreadyQueued++;
+            }
+        }
+
+        @Override
+        public void stacked(int transfers) {
+            synchronized (LoadSimulation.this) {
+                stacked++;
+            }
+        }
+
+        @Override
+        public void failed(Exception e) {
+            synchronized (LoadSimulation.this) {
+                // One stack trace is enough, the rest only count
+                if (failed++ == 0) plugin.getLogger().log(Level.WARNING, "Simulated stack failed: " + e.getMessage(), e);
+            }
+        }
+    }
+}
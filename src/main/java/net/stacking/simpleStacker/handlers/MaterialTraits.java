@@ -0,0 +1,72 @@
+package net.stacking.simpleStacker.handlers;
+
+import org.bukkit.Material;
+
+/**
+ * Per-material trait bits, worked out once so event handlers don't build name strings
+ */
+public final class MaterialTraits {
+
+    // Has durability
+    public static final int DAMAGEABLE = 1;
+    // Uses durability on right-click (tilling, stripping, paths, fire, shearing)
+    public static final int RIGHT_CLICK_TOOL = 1 << 1;
+    // Swings at blocks on left-click
+    public static final int LEFT_CLICK_TOOL = 1 << 2;
+    // Swords
+    public static final int WEAPON = 1 << 3;
+    public static final int SHULKER_BOX = 1 << 4;
+    // Plain and dyed bundles
+    public static final int BUNDLE = 1 << 5;
+
+    private static final int[] TRAITS = classify();
+
+    private MaterialTraits() {
+    }
+
+    /**
+     * Check if a material has any of the given trait bits
+     */
+    public static boolean has(Material material, int traits) {
+        return material != null && (TRAITS[material.ordinal()] & traits) != 0;
+    }
+
+    private static int[] classify() {
+        Material[] materials = Material.values();
+        int[] table = new int[materials.length];
+
+        for (Material type : materials) {
+            if (type.isLegacy()) continue;
+
+            String name = type.name();
+            int bits = 0;
+
+            if (type.getMaxDurability() > 0) bits |= DAMAGEABLE;
+
+            // Tools that use durability on right-click
+            if (name.endsWith("_HOE") ||
+                    name.endsWith("_AXE") ||
+                    name.endsWith("_SHOVEL") ||
+                    type == Material.FLINT_AND_STEEL ||
+                    type == Material.SHEARS) {
+                bits |= RIGHT_CLICK_TOOL;
+            }
+
+            if (name.endsWith("_PICKAXE") ||
+                    name.endsWith("_AXE") ||
+                    name.endsWith("_SHOVEL") ||
+                    name.endsWith("_HOE")) {
+                bits |= LEFT_CLICK_TOOL;
+            }
+
+            if (name.endsWith("_SWORD")) bits |= WEAPON;
+
+            if (type == Material.SHULKER_BOX || name.endsWith("_SHULKER_BOX")) bits |= SHULKER_BOX;
+            if (type == Material.BUNDLE || name.endsWith("_BUNDLE")) bits |= BUNDLE;
+
+            table[type.ordinal()] = bits;
+        }
+
+        return table;
+    }
+}
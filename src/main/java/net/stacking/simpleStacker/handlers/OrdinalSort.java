@@ -0,0 +1,75 @@
+package net.stacking.simpleStacker.handlers;
+
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * Stable LSD radix sort on small non-negative keys, no comparator
+ * Plain Java, so it can be benchmarked without a server
+ */
+final class OrdinalSort {
+
+    // Sort digits of 6 bits, two passes cover every Material ordinal
+    private static final int RADIX_BITS = 6;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private OrdinalSort() {
+    }
+
+    /**
+     * Order the entries by key, nulls and entries with a negative key end up as nulls at the end
+     */
+    @SuppressWarnings("unchecked")
+    static <T> void sort(T[] slots, ToIntFunction<? super T> keyOf) {
+        Object[] items = new Object[slots.length];
+        int[] keys = new int[slots.length];
+        int count = 0;
+        int maxKey = 0;
+
+        for (T slot : slots) {
+            if (slot == null) continue;
+            int key = keyOf.applyAsInt(slot);
+            if (key < 0) continue;
+            items[count] = slot;
+            keys[count] = key;
+            maxKey = Math.max(maxKey, key);
+            count++;
+        }
+
+        Object[] itemBuffer = new Object[count];
+        int[] keyBuffer = new int[count];
+        int[] buckets = new int[RADIX];
+
+        for (int shift = 0; shift == 0 || (maxKey >>> shift) != 0; shift += RADIX_BITS) {
+            Arrays.fill(buckets, 0);
+            for (int i = 0; i < count; i++) {
+                buckets[(keys[i] >>> shift) & (RADIX - 1)]++;
+            }
+
+            // Bucket counts to start positions
+            int position = 0;
+            for (int b = 0; b < RADIX; b++) {
+                int size = buckets[b];
+                buckets[b] = position;
+                position += size;
+            }
+
+            for (int i = 0; i < count; i++) {
+                int at = buckets[(keys[i] >>> shift) & (RADIX - 1)]++;
+                itemBuffer[at] = items[i];
+                keyBuffer[at] = keys[i];
+            }
+
+            Object[] sortedItems = itemBuffer;
+            itemBuffer = items;
+            items = sortedItems;
+            int[] sortedKeys = keyBuffer;
+            keyBuffer = keys;
+            keys = sortedKeys;
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = i < count ? (T) items[i] : null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package net.stacking.simpleStacker.handlers;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one timed SimpleStacker phase, only written while a recording is running
+ */
+@Name("net.stacking.simpleStacker.Phase")
+@Label("SimpleStacker Phase")
+@Category("SimpleStacker")
+@Description("Time spent in one step of stacking or in a durability check")
+@StackTrace(false)
+class PhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Took")
+    @Timespan(Timespan.NANOSECONDS)
+    long took;
+}
@@ -0,0 +1,88 @@
+package net.stacking.simpleStacker.handlers;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Thin wrapper over Paper's region aware schedulers
+ * Works the same on Paper and Folia, on Paper every region is the main thread
+ */
+public final class Scheduling {
+
+    private Scheduling() {
+    }
+
+    /**
+     * Run off any tick thread
+     */
+    public static void runAsync(Plugin plugin, Runnable task) {
+        Bukkit.getAsyncScheduler().runNow(plugin, t -> task.run());
+    }
+
+    /**
+     * Run on the thread that owns the entity, on the next tick
+     * Dropped if the entity is removed (player logged out) before then
+     */
+    public static void runFor(Plugin plugin, Entity entity, Runnable task) {
+        entity.getScheduler().run(plugin, t -> task.run(), null);
+    }
+
+    /**
+     * Same as runFor, but runs retired instead if the entity is gone before the task could run
+     * Exactly one of the two always runs: Paper runs neither and returns null when the entity's
+     * scheduler was already retired, so retired is run right here on the caller's thread then
+     */
+    public static void runFor(Plugin plugin, Entity entity, Runnable task, Runnable retired) {
+        if (entity.getScheduler().run(plugin, t -> task.run(), retired) == null) {
+            retired.run();
+        }
+    }
+
+    /**
+     * Repeat on the thread that owns the entity every periodTicks, starting next tick
+     * retired runs once when the entity goes away, right here if it is already gone
+     *
+     * @return the task, null if the entity was already gone
+     */
+    public static ScheduledTask runForTimer(Plugin plugin, Entity entity, Runnable task, Runnable retired, long periodTicks) {
+        ScheduledTask scheduled = entity.getScheduler().runAtFixedRate(plugin, t -> task.run(), retired, 1, periodTicks);
+        if (scheduled == null) retired.run();
+        return scheduled;
+    }
+
+    /**
+     * Run on the thread that owns the given chunk, on the next tick
+     */
+    public static void runAt(Plugin plugin, World world, int chunkX, int chunkZ, Runnable task) {
+        Bukkit.getRegionScheduler().run(plugin, world, chunkX, chunkZ, t -> task.run());
+    }
+
+    /**
+     * Run on the global region, for work not tied to a world position
+     */
+    public static void runGlobal(Plugin plugin, Runnable task) {
+        Bukkit.getGlobalRegionScheduler().run(plugin, t -> task.run());
+    }
+
+    /**
+     * Repeat on the global region every periodTicks, starting next tick
+     */
+    public static ScheduledTask runGlobalTimer(Plugin plugin, Runnable task, long periodTicks) {
+        return Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> task.run(), 1, periodTicks);
+    }
+
+    /**
+     * Run where it is safe to talk to the sender: its own region for entities, global otherwise
+     */
+    public static void runFor(Plugin plugin, CommandSender sender, Runnable task) {
+        if (sender instanceof Entity entity) {
+            runFor(plugin, entity, task);
+        } else {
+            runGlobal(plugin, task);
+        }
+    }
+}
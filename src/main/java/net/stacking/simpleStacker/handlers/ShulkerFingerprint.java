@@ -0,0 +1,71 @@
+package net.stacking.simpleStacker.handlers;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Content hash stored on shulker box items
+ * Lets /stack rule out different shulkers without opening either of them
+ * Bundles are never stamped, their contents change while they sit in an inventory
+ */
+public class ShulkerFingerprint {
+
+    private final NamespacedKey key;
+    // Flat hash from before nested contents were walked, removed whenever a box is stamped or cleared
+    private final NamespacedKey legacyKey;
+
+    public ShulkerFingerprint(Plugin plugin) {
+        this.key = new NamespacedKey(plugin, "contents_digest");
+        this.legacyKey = new NamespacedKey(plugin, "contents_hash");
+    }
+
+    /**
+     * Stored fingerprint, or null if the item has none
+     * Reads the item's data directly, no meta clone
+     */
+    public Long get(ItemStack item) {
+        return item.getPersistentDataContainer().get(key, PersistentDataType.LONG);
+    }
+
+    /**
+     * Compute and store the fingerprint if the item doesn't have one yet
+     * Only call this on shulker boxes
+     */
+    public void stamp(ItemStack item) {
+        if (item.getPersistentDataContainer().has(key, PersistentDataType.LONG)) return;
+
+        Long digest = ContentHasher.digest(item);
+        // Leave it unstamped, comparisons hash it again or fall back to the full check
+        if (digest == null) return;
+
+        try {
+            item.editPersistentDataContainer(pdc -> {
+                pdc.remove(legacyKey);
+                pdc.set(key, PersistentDataType.LONG, digest);
+            });
+        } catch (Exception e) {
+            // Fail silently
+        }
+    }
+
+    /**
+     * Remove the fingerprint, used when the contents may have changed
+     */
+    public void clear(ItemStack item) {
+        if (!item.getPersistentDataContainer().has(key) && !item.getPersistentDataContainer().has(legacyKey)) return;
+
+        item.editPersistentDataContainer(pdc -> {
+            pdc.remove(key);
+            pdc.remove(legacyKey);
+        });
+    }
+
+    /**
+     * Check if the item carries a fingerprint, current or legacy
+     */
+    public boolean has(ItemStack item) {
+        return item.getPersistentDataContainer().has(key) || item.getPersistentDataContainer().has(legacyKey);
+    }
+}
@@ -0,0 +1,201 @@
+package net.stacking.simpleStacker.handlers;
+
+import io.papermc.paper.datacomponent.DataComponentTypes;
+import io.papermc.paper.datacomponent.item.ItemContainerContents;
+import net.stacking.simpleStacker.SimpleStacker;
+import net.stacking.simpleStacker.listeners.DurabilityUsageListener;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * In-server benchmarks for the stacking engine, run with /stack bench
+ * Covers the parts that need real items, the plain Java parts have JMH benchmarks under src/jmh
+ * Uses its own engine and stats, so runs never show up in /stack stats, JMX or JFR
+ * Every scenario is rebuilt before each measured call, so only the call itself is timed
+ * Allocation is read from the thread's allocation counter when the JVM has it turned on
+ */
+public class StackBenchmark {
+
+    // Same size as a player's main inventory
+    private static final int SLOTS = 36;
+    public static final int MAX_ITERATIONS = 100_000;
+
+    private final SimpleStacker plugin;
+    private final StackEngine engine;
+    private final ItemHandler handler;
+    private final com.sun.management.ThreadMXBean threads;
+
+    // Keeps results alive so the JIT can't drop the measured calls
+    private long sink;
+
+    public StackBenchmark(SimpleStacker plugin) {
+        this.plugin = plugin;
+        this.handler = plugin.getItemHandler();
+        this.engine = new StackEngine(new ShulkerFingerprint(plugin), new StackStats());
+
+        com.sun.management.ThreadMXBean bean = null;
+        // Only read the JVM-wide setting, a plugin command has no business changing it
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean sun
+                && sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+            bean = sun;
+        }
+        this.threads = bean;
+    }
+
+    /**
+     * Run every benchmark, the interact dispatch only when a player is given
+     * Touches nothing but its own item copies, no inventories, so it can run off the main thread
+     */
+    public List<Result> run(int iterations, Player player) {
+        List<Result> results = new ArrayList<>();
+        StackRules rules = handler.getRules();
+
+        results.add(plan("plan: all unique", iterations, allUnique(), rules));
+        results.add(plan("plan: all mergeable", iterations, allMergeable(), rules));
+        results.add(plan("plan: shulkers", iterations, shulkers(), rules));
+        results.add(plan("plan: damaged tools", iterations, damagedTools(), rules));
+
+        ItemStack tool = damaged(Material.DIAMOND_PICKAXE, 10);
+        results.add(measure("canStack: damaged tools", iterations, () -> {
+        }, () -> engine.canStack(tool, tool.clone()) ? 1 : 0));
+
+        // Unstamped boxes with equal contents, so both keys hash the contents before comparing
+        ItemStack shulker = shulker(0);
+        results.add(measure("canStack: shulker contents", iterations, () -> {
+        }, () -> engine.canStack(shulker, shulker.clone()) ? 1 : 0));
+
+        if (player != null) {
+            // The common case: the player isn't flagged as holding a stacked tool, so nothing is cancelled or messaged
+            DurabilityUsageListener listener = new DurabilityUsageListener(plugin, new StackStats(), new UsageNotifier(plugin, 0));
+            ItemStack sword = new ItemStack(Material.DIAMOND_SWORD, 2);
+            results.add(measure("onPlayerInteract dispatch", iterations, () -> {
+            }, () -> {
+                PlayerInteractEvent event = new PlayerInteractEvent(player, Action.RIGHT_CLICK_AIR, sword, null, null);
+                listener.onPlayerInteract(event);
+                return event.useItemInHand().ordinal();
+            }));
+        }
+
+        return results;
+    }
+
+    /**
+     * The worker step of /stack, on fresh copies of the scenario every call
+     */
+    private Result plan(String name, int iterations, ItemStack[] scenario, StackRules rules) {
+        ItemStack[][] slots = new ItemStack[1][];
+        return measure(name, iterations, () -> slots[0] = copy(scenario), () -> engine.plan(slots[0], rules));
+    }
+
+    private Result measure(String name, int iterations, Runnable setup, IntSupplier op) {
+        // Warm up with a tenth of the runs so the measured calls hit compiled code
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            setup.run();
+            sink += op.getAsInt();
+        }
+
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            setup.run();
+
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            sink += op.getAsInt();
+            nanos += System.nanoTime() - start;
+            bytes += allocatedBytes() - allocatedBefore;
+        }
+
+        return new Result(name, (double) nanos / iterations, threads == null ? -1 : bytes / iterations);
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * 36 different items, nothing to merge
+     */
+    private ItemStack[] allUnique() {
+        ItemStack[] slots = new ItemStack[SLOTS];
+        int i = 0;
+        for (Material material : Material.values()) {
+            if (i == SLOTS) break;
+            if (material.isLegacy() || !material.isItem() || material.isAir()) continue;
+            slots[i++] = new ItemStack(material, 1);
+        }
+        return slots;
+    }
+
+    /**
+     * 36 single potions of one kind, everything ends up in one or two stacks
+     */
+    private ItemStack[] allMergeable() {
+        ItemStack[] slots = new ItemStack[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new ItemStack(Material.POTION, 1);
+        }
+        return slots;
+    }
+
+    /**
+     * Filled shulker boxes, four different contents spread over the inventory
+     */
+    private ItemStack[] shulkers() {
+        ItemStack[] slots = new ItemStack[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = shulker(i % 4);
+        }
+        return slots;
+    }
+
+    /**
+     * Pickaxes worn down to a handful of different damage values
+     */
+    private ItemStack[] damagedTools() {
+        ItemStack[] slots = new ItemStack[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = damaged(Material.DIAMOND_PICKAXE, (i % 6) * 10);
+        }
+        return slots;
+    }
+
+    private ItemStack shulker(int variant) {
+        List<ItemStack> contents = new ArrayList<>(27);
+        for (int i = 0; i < 27; i++) {
+            contents.add(new ItemStack(i % 2 == 0 ? Material.COBBLESTONE : Material.OAK_LOG, 32 + variant));
+        }
+
+        ItemStack box = new ItemStack(Material.SHULKER_BOX);
+        box.setData(DataComponentTypes.CONTAINER, ItemContainerContents.containerContents(contents));
+        return box;
+    }
+
+    private ItemStack damaged(Material material, int damage) {
+        ItemStack item = new ItemStack(material);
+        item.setData(DataComponentTypes.DAMAGE, damage);
+        return item;
+    }
+
+    private static ItemStack[] copy(ItemStack[] scenario) {
+        ItemStack[] out = new ItemStack[scenario.length];
+        for (int i = 0; i < scenario.length; i++) {
+            out[i] = scenario[i] == null ? null : scenario[i].clone();
+        }
+        return out;
+    }
+
+    /**
+     * @param bytesPerOp average bytes allocated per call, -1 if the JVM doesn't count allocations
+     */
+    public record Result(String name, double nanosPerOp, long bytesPerOp) {
+    }
+}
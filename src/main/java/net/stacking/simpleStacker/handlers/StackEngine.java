@@ -0,0 +1,293 @@
+package net.stacking.simpleStacker.handlers;
+
+import io.papermc.paper.datacomponent.DataComponentTypes;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merge engine used by /stack
+ * Groups slots by stackability in one pass, then fills each group in slot order
+ */
+public class StackEngine {
+
+    private final ShulkerFingerprint fingerprints;
+    private final StackStats stats;
+
+    public StackEngine(ShulkerFingerprint fingerprints, StackStats stats) {
+        this.fingerprints = fingerprints;
+        this.stats = stats;
+    }
+
+    /**
+     * Stamp and merge a set of copies, touches nothing but the array
+     * Safe to run off the main thread as long as nobody else holds the copies
+     *
+     * @return number of transfers made
+     */
+    public int plan(ItemStack[] slots, StackRules rules) {
+        // First pass: Apply max stack size metadata to the copies
+        normalize(slots, rules);
+
+        // Second pass: Group similar items once and merge each group
+        return merge(slots, rules);
+    }
+
+    /**
+     * First half of plan: prepare every copy for comparison
+     * Callers that time the two halves separately call this and merge themselves
+     */
+    public void normalize(ItemStack[] slots, StackRules rules) {
+        for (ItemStack item : slots) {
+            if (item != null) {
+                prepare(item, rules);
+            }
+        }
+    }
+
+    /**
+     * Order the slots by material with the empty ones last
+     * Stable, so the stacks of one material keep the order the merge left them in
+     * LSD radix sort on Material.ordinal(), a few passes over at most 36 items, no comparator
+     */
+    public static void sortByMaterial(ItemStack[] slots) {
+        OrdinalSort.sort(slots, item -> item.getType().isAir() ? -1 : item.getType().ordinal());
+    }
+
+    /**
+     * Get an item ready for comparison: custom max stack size, plus content fingerprint for shulker boxes
+     */
+    public void prepare(ItemStack item, StackRules rules) {
+        applyMaxStackSize(item, rules);
+        if (isShulkerBox(item)) {
+            fingerprints.stamp(item);
+        }
+    }
+
+    /**
+     * Apply max stack size to an item (now includes damageable items)
+     * Reads and writes the max_stack_size component directly, no meta copy
+     */
+    public void applyMaxStackSize(ItemStack item, StackRules rules) {
+        if (item == null || item.getType() == Material.AIR) return;
+
+        int targetMax = rules.getStackSize(item.getType());
+        if (targetMax == 0) return;
+
+        try {
+            // Apply max stack size (now works for damageable items too!)
+            Integer current = item.getData(DataComponentTypes.MAX_STACK_SIZE);
+            if (current == null || current != targetMax) {
+                item.setData(DataComponentTypes.MAX_STACK_SIZE, targetMax);
+            }
+        } catch (Exception e) {
+            // Silently fail for items that don't support max stack size
+        }
+    }
+
+    /**
+     * Merge stackable items in place
+     * Emptied slots are set to null in the array
+     * End state is the same as the old pairwise i/j loop
+     * Takes one fixed rule set, so a reload mid-pass can't mix old and new sizes
+     *
+     * @return number of transfers made
+     */
+    public int merge(ItemStack[] slots, StackRules rules) {
+        List<int[]> groups = group(slots);
+
+        int transfers = 0;
+        int merged = 0;
+        for (int[] group : groups) {
+            int filled = fill(slots, group, rules);
+            if (filled > 0) merged++;
+            transfers += filled;
+        }
+        stats.countMergedGroups(merged);
+        return transfers;
+    }
+
+    /**
+     * Bucket slots by material, then split each bucket against one representative per group
+     * Every slot gets one StackKey, so keys are read once per slot instead of once per pair
+     * Slot indices inside a group stay in ascending order
+     */
+    private List<int[]> group(ItemStack[] slots) {
+        Map<Material, List<SlotGroup>> byType = new EnumMap<>(Material.class);
+        List<SlotGroup> ordered = new ArrayList<>();
+
+        for (int i = 0; i < slots.length; i++) {
+            ItemStack item = slots[i];
+            if (item == null || item.getType() == Material.AIR) continue;
+
+            StackKey key = StackKey.of(item, fingerprints);
+            List<SlotGroup> candidates = byType.computeIfAbsent(key.getType(), t -> new ArrayList<>(2));
+
+            SlotGroup match = null;
+            for (SlotGroup candidate : candidates) {
+                if (canStack(candidate.key, key)) {
+                    match = candidate;
+                    break;
+                }
+            }
+
+            if (match == null) {
+                match = new SlotGroup(key);
+                candidates.add(match);
+                ordered.add(match);
+            }
+            match.add(i);
+        }
+
+        List<int[]> groups = new ArrayList<>(ordered.size());
+        for (SlotGroup group : ordered) {
+            if (group.size > 1) groups.add(group.toArray());
+        }
+        return groups;
+    }
+
+    /**
+     * Fill partial stacks of one group from the later stacks of that group, see StackFill
+     * Only stacks whose size changed are written back
+     */
+    private int fill(ItemStack[] slots, int[] group, StackRules rules) {
+        int[] amounts = new int[group.length];
+        int[] targets = new int[group.length];
+        for (int i = 0; i < group.length; i++) {
+            ItemStack item = slots[group[i]];
+            amounts[i] = item.getAmount();
+            targets[i] = getTargetMaxStack(item, rules);
+        }
+
+        int transfers = StackFill.fill(amounts, targets);
+        if (transfers == 0) return 0;
+
+        for (int i = 0; i < group.length; i++) {
+            ItemStack item = slots[group[i]];
+            if (amounts[i] <= 0) {
+                // The stack was emptied, remove it
+                slots[group[i]] = null;
+            } else if (amounts[i] != item.getAmount()) {
+                item.setAmount(amounts[i]);
+            }
+        }
+
+        return transfers;
+    }
+
+    /**
+     * Get the target max stack size for an item
+     */
+    public int getTargetMaxStack(ItemStack item, StackRules rules) {
+        int target = rules.getStackSize(item.getType());
+        if (target != 0) {
+            return target;
+        }
+        return item.getMaxStackSize();
+    }
+
+    /**
+     * Check if two items can be stacked together
+     * Included durability checker
+     */
+    public boolean canStack(ItemStack item1, ItemStack item2) {
+        if (item1 == null || item2 == null) return false;
+        if (item1.getType() != item2.getType()) return false;
+
+        return canStack(StackKey.of(item1, fingerprints), StackKey.of(item2, fingerprints));
+    }
+
+    /**
+     * Build the comparison key for an item, for callers that compare it many times
+     */
+    public StackKey keyOf(ItemStack item) {
+        return StackKey.of(item, fingerprints);
+    }
+
+    /**
+     * Same as canStack on items, but on keys that were already built
+     */
+    public boolean canStack(StackKey key1, StackKey key2) {
+        stats.countComparison();
+
+        // Type, hash, durability and content digest first, isSimilar only if they all agree
+        if (!key1.matches(key2)) return false;
+
+        // Equal content digests already matched above, nested shulkers and bundles included
+        // Walk the contents only if one of them couldn't be hashed
+        if (key1.isContainer() && !(key1.hasDigest() && key2.hasDigest())) {
+            return shulkerContentsMatch(key1.getItem(), key2.getItem());
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if an item is a shulker box
+     */
+    private boolean isShulkerBox(ItemStack item) {
+        if (item == null) return false;
+        return MaterialTraits.has(item.getType(), MaterialTraits.SHULKER_BOX);
+    }
+
+    /**
+     * Check if two shulker boxes or bundles have identical contents
+     * Reads the container component directly instead of building two ShulkerBox block states
+     */
+    private boolean shulkerContentsMatch(ItemStack shulker1, ItemStack shulker2) {
+        stats.countShulkerDeepCompare();
+        try {
+            List<ItemStack> contents1 = ContentHasher.contentsOf(shulker1);
+            List<ItemStack> contents2 = ContentHasher.contentsOf(shulker2);
+
+            // Trailing empty slots may or may not be stored, so compare up to the longer list
+            int size = Math.max(contents1.size(), contents2.size());
+            for (int i = 0; i < size; i++) {
+                ItemStack c1 = ContentHasher.slotAt(contents1, i);
+                ItemStack c2 = ContentHasher.slotAt(contents2, i);
+
+                if (c1 == null && c2 == null) continue;
+                if (c1 == null || c2 == null) return false;
+                if (!c1.equals(c2)) return false;
+            }
+
+            return true;
+
+        } catch (Exception e) {
+            // If we can't compare, assume they don't match to be safe
+            return false;
+        }
+    }
+
+    /**
+     * Growable list of slot indices for one stack group
+     */
+    private static final class SlotGroup {
+        private final StackKey key;
+        private int[] slots = new int[4];
+        private int size;
+
+        SlotGroup(StackKey key) {
+            this.key = key;
+        }
+
+        void add(int slot) {
+            if (size == slots.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(slots, 0, grown, 0, size);
+                slots = grown;
+            }
+            slots[size++] = slot;
+        }
+
+        int[] toArray() {
+            int[] out = new int[size];
+            System.arraycopy(slots, 0, out, 0, size);
+            return out;
+        }
+    }
+}
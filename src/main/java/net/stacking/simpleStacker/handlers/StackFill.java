@@ -0,0 +1,57 @@
+package net.stacking.simpleStacker.handlers;
+
+/**
+ * The fill step of StackEngine on plain stack sizes, no items involved
+ * Plain Java, so it can be benchmarked without a server
+ */
+final class StackFill {
+
+    private StackFill() {
+    }
+
+    /**
+     * Fill partial stacks of one group from the later stacks of that group
+     * The donor cursor only moves forward, since every slot it passes is empty
+     *
+     * @param amounts stack sizes in slot order, emptied stacks end up at 0
+     * @param targets target max stack size of each stack
+     * @return number of transfers made
+     */
+    static int fill(int[] amounts, int[] targets) {
+        int transfers = 0;
+        int donor = 1;
+
+        for (int r = 0; r < amounts.length; r++) {
+            if (amounts[r] <= 0) continue;
+
+            int targetMax = targets[r];
+
+            // If this stack is already full, skip it
+            if (amounts[r] >= targetMax) continue;
+
+            if (donor <= r) donor = r + 1;
+
+            while (donor < amounts.length) {
+                if (amounts[donor] <= 0) {
+                    donor++;
+                    continue;
+                }
+
+                int spaceLeft = targetMax - amounts[r];
+                if (spaceLeft <= 0) break; // Current stack is full
+
+                int transferAmount = Math.min(spaceLeft, amounts[donor]);
+
+                amounts[r] += transferAmount;
+                amounts[donor] -= transferAmount;
+
+                // The other stack is now empty, move on to the next one
+                if (amounts[donor] <= 0) donor++;
+
+                transfers++;
+            }
+        }
+
+        return transfers;
+    }
+}
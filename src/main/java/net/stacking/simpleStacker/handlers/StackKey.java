@@ -0,0 +1,83 @@
+package net.stacking.simpleStacker.handlers;
+
+import io.papermc.paper.datacomponent.DataComponentTypes;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Everything canStack needs from one slot, read from the components without cloning the meta
+ * Built once per snapshot, comparisons then only touch the keys
+ * Type, damage and content digest only reject, isSimilar confirms every match
+ */
+public final class StackKey {
+
+    private final ItemStack item;
+    private final Material type;
+    private final int damage;
+    private final boolean hasDigest;
+    private final long digest;
+
+    private StackKey(ItemStack item, Material type, int damage, boolean hasDigest, long digest) {
+        this.item = item;
+        this.type = type;
+        this.damage = damage;
+        this.hasDigest = hasDigest;
+        this.digest = digest;
+    }
+
+    /**
+     * Build the key for an item, shulker boxes and bundles also get a content digest
+     * Shulkers use their stored fingerprint when they have one, everything else is hashed here once
+     */
+    public static StackKey of(ItemStack item, ShulkerFingerprint fingerprints) {
+        Material type = item.getType();
+
+        // Damage straight from the component, items without durability read as 0
+        Integer damage = item.getData(DataComponentTypes.DAMAGE);
+        if (damage == null) damage = 0;
+
+        Long fingerprint = null;
+        if (MaterialTraits.has(type, MaterialTraits.SHULKER_BOX)) {
+            fingerprint = fingerprints.get(item);
+        }
+        if (fingerprint == null && MaterialTraits.has(type, MaterialTraits.SHULKER_BOX | MaterialTraits.BUNDLE)) {
+            fingerprint = ContentHasher.digest(item);
+        }
+
+        return new StackKey(item, type, damage, fingerprint != null, fingerprint != null ? fingerprint : 0L);
+    }
+
+    /**
+     * Cheap rejection on key fields, isSimilar only runs when all of them agree
+     */
+    public boolean matches(StackKey other) {
+        if (type != other.type) return false;
+
+        // Durability must be EXACTLY the same
+        if (damage != other.damage) return false;
+
+        // Different digests mean different contents
+        if (hasDigest && other.hasDigest && digest != other.digest) return false;
+
+        return item.isSimilar(other.item);
+    }
+
+    public ItemStack getItem() {
+        return item;
+    }
+
+    public Material getType() {
+        return type;
+    }
+
+    /**
+     * Shulker box or bundle
+     */
+    public boolean isContainer() {
+        return MaterialTraits.has(type, MaterialTraits.SHULKER_BOX | MaterialTraits.BUNDLE);
+    }
+
+    public boolean hasDigest() {
+        return hasDigest;
+    }
+}
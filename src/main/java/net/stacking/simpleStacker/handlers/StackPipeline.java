@@ -0,0 +1,184 @@
+package net.stacking.simpleStacker.handlers;
+
+import net.stacking.simpleStacker.SimpleStacker;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * One /stack pass: rate limit, snapshot on the player's thread, plan on a worker,
+ * commit on a later tick through the player's own scheduler, and plan again if the inventory moved
+ * /stack uses one with the plugin's engine, stats and limiter, /stack simulate builds its own
+ */
+public class StackPipeline {
+
+    // Stale plans are redone at most this many times before giving up
+    private static final int MAX_PLAN_ATTEMPTS = 3;
+
+    private final SimpleStacker plugin;
+    private final StackEngine engine;
+    private final StackStats stats;
+    private final StackRateLimiter limiter;
+
+    /**
+     * @param limiter null to run every pass right away
+     */
+    public StackPipeline(SimpleStacker plugin, StackEngine engine, StackStats stats, StackRateLimiter limiter) {
+        this.plugin = plugin;
+        this.engine = engine;
+        this.stats = stats;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Start a pass within the key's rate limit
+     * When the server is busy the pass waits for a free slot and starts on a later tick
+     * The outcome gets exactly one call, unless the player leaves before the pass is over
+     *
+     * @param player runs the snapshot and commit on its thread
+     * @param key    rate limit bucket, the player's own UUID for real commands
+     * @param target resolves the inventory to stack, null once it may no longer be touched
+     * @param slots  storage slots to touch in ascending order, null for all of them
+     * @param sort   also order the slots by material (/stack sort)
+     */
+    public void stack(Player player, UUID key, Supplier<Inventory> target, int[] slots, boolean sort, Outcome outcome) {
+        if (limiter == null) {
+            run(player, target, slots, sort, outcome, 1, System.nanoTime(), () -> {
+            });
+            return;
+        }
+
+        if (!limiter.tryAcquire(key)) {
+            outcome.rateLimited();
+            return;
+        }
+
+        if (!limiter.submit(player, key, done -> run(player, target, slots, sort, outcome, 1, System.nanoTime(), done))) {
+            outcome.alreadyQueued();
+        }
+    }
+
+    /**
+     * @param issued when the pass started, retries keep the original time
+     * @param done   run exactly once when the pass is over, whatever the outcome,
+     *               also when the player quit while the plan was on the worker
+     */
+    private void run(Player player, Supplier<Inventory> target, int[] slots, boolean sort, Outcome outcome,
+                     int attempt, long issued, Runnable done) {
+        // One rule set for the whole pass, even if /stack reload lands meanwhile
+        StackRules rules = plugin.getItemHandler().getRules();
+        InventorySnapshot snapshot;
+
+        try {
+            Inventory inventory = target.get();
+            if (inventory == null) {
+                done.run();
+                outcome.stacked(0);
+                return;
+            }
+
+            // Read storage slots once (0-35 for players), armor and offhand are not storage slots
+            long start = System.nanoTime();
+            snapshot = slots != null ? InventorySnapshot.capture(inventory, slots) : InventorySnapshot.capture(inventory);
+            stats.record(StackStats.Phase.SNAPSHOT, start);
+        } catch (Exception e) {
+            done.run();
+            outcome.failed(e);
+            return;
+        }
+
+        Scheduling.runAsync(plugin, () -> {
+            int stackedGroups;
+            try {
+                stackedGroups = plan(snapshot.getSlots(), rules, sort);
+            } catch (Exception e) {
+                done.run();
+                Scheduling.runFor(plugin, player, () -> outcome.failed(e));
+                return;
+            }
+
+            // Not run at all if the player left in the meantime, done still ends the pass
+            Scheduling.runFor(plugin, player, () -> {
+                boolean retrying = false;
+                try {
+                    // Container was broken, locked or opened by someone else while planning
+                    if (target.get() == null) {
+                        outcome.stacked(0);
+                        return;
+                    }
+
+                    // Write back only the changed slots, nothing if the inventory moved under us
+                    long start = System.nanoTime();
+                    int written = snapshot.commit();
+                    stats.record(StackStats.Phase.COMMIT, start);
+
+                    if (written < 0) {
+                        stats.countStaleCommit();
+                        if (attempt < MAX_PLAN_ATTEMPTS) {
+                            retrying = true;
+                            run(player, target, slots, sort, outcome, attempt + 1, issued, done);
+                        } else {
+                            outcome.stacked(0);
+                        }
+                        return;
+                    }
+                } catch (Exception e) {
+                    outcome.failed(e);
+                    return;
+                } finally {
+                    if (!retrying) done.run();
+                }
+
+                // Command to result, including the wait for the worker and the next tick
+                stats.record(StackStats.Phase.COMMAND, issued);
+                outcome.stacked(stackedGroups);
+            }, done);
+        });
+    }
+
+    /**
+     * Stamp and merge the copies like StackEngine#plan, timing both phases
+     * Only /stack records these, so auto-stack, death drops and the benchmarks don't mix in
+     *
+     * @param sort also order the slots by material afterwards, not timed
+     * @return number of transfers made
+     */
+    public int plan(ItemStack[] slots, StackRules rules, boolean sort) {
+        long start = System.nanoTime();
+        engine.normalize(slots, rules);
+        stats.record(StackStats.Phase.NORMALIZE, start);
+
+        start = System.nanoTime();
+        int transfers = engine.merge(slots, rules);
+        stats.record(StackStats.Phase.MERGE, start);
+
+        if (sort) StackEngine.sortByMaterial(slots);
+        return transfers;
+    }
+
+    /**
+     * How a pass ended, called on the player's thread
+     */
+    public interface Outcome {
+
+        /**
+         * The key's bucket was empty, nothing was done
+         */
+        void rateLimited();
+
+        /**
+         * The key already had a pass waiting for a slot, nothing was done
+         */
+        void alreadyQueued();
+
+        /**
+         * @param transfers number of transfers written back, 0 if there was nothing to do or it kept going stale
+         */
+        void stacked(int transfers);
+
+        void failed(Exception e);
+    }
+}
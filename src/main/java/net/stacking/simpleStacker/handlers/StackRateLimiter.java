@@ -0,0 +1,167 @@
+package net.stacking.simpleStacker.handlers;
+
+import net.stacking.simpleStacker.SimpleStacker;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps /stack spam off the tick thread
+ * Each player has a token bucket (burst, refill per second), and only so many passes
+ * may run at once server-wide, the rest wait for a free slot and start on a later tick
+ * Nothing here takes a lock
+ */
+public class StackRateLimiter {
+
+    private final SimpleStacker plugin;
+    private final TokenBucket bucket;
+    private final int maxConcurrent;
+
+    // Per player: the time the bucket will be full again, as System.nanoTime()
+    private final Map<UUID, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final Queue<Pending> waiting = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, Pending> queued = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public StackRateLimiter(SimpleStacker plugin, int burst, double perSecond, int maxConcurrent) {
+        this.plugin = plugin;
+        this.bucket = new TokenBucket(burst, perSecond);
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+    }
+
+    /**
+     * Limiter with the rate-limit settings from config.yml, or null if it is turned off
+     */
+    public static StackRateLimiter fromConfig(SimpleStacker plugin) {
+        if (!plugin.getConfig().getBoolean("rate-limit.enabled", true)) return null;
+
+        return new StackRateLimiter(plugin,
+                plugin.getConfig().getInt("rate-limit.burst", 3),
+                plugin.getConfig().getDouble("rate-limit.per-second", 1),
+                plugin.getConfig().getInt("rate-limit.max-concurrent", 16));
+    }
+
+    /**
+     * Take one token from the player's bucket
+     *
+     * @return false if the bucket is empty
+     */
+    public boolean tryAcquire(UUID player) {
+        AtomicLong full = buckets.computeIfAbsent(player, id -> new AtomicLong(TokenBucket.FULL));
+        return bucket.tryAcquire(full, System.nanoTime());
+    }
+
+    /**
+     * Run a pass now if a slot is free, otherwise queue it for a later tick
+     * The pass gets a callback it must run exactly once when it is done
+     * A key has at most one pass waiting, later ones are dropped
+     *
+     * @param player the pass runs on this player's thread
+     * @param key    the player's UUID, or one per simulated player in /stack simulate
+     * @return false if the key already had a pass waiting
+     */
+    public boolean submit(Player player, UUID key, Consumer<Runnable> pass) {
+        if (reserve()) {
+            start(player, pass, false);
+            return true;
+        }
+
+        Pending pending = new Pending(player, key, pass);
+        if (queued.putIfAbsent(key, pending) != null) return false;
+        waiting.add(pending);
+
+        // Every running pass may have finished between the failed reserve and the add
+        drain();
+        return true;
+    }
+
+    /**
+     * Drop everything kept for a player who left
+     */
+    public void forget(UUID player) {
+        buckets.remove(player);
+        // A waiting pass stays in the queue, drain skips it once the player is gone
+        queued.remove(player);
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxConcurrent) return false;
+            if (inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Start waiting passes while there are free slots
+     */
+    private void drain() {
+        while (!waiting.isEmpty() && reserve()) {
+            Pending next = waiting.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+
+            // Forgotten players, or a pass left over from before the player logged out and back in
+            if (!queued.remove(next.key, next) || !next.player.isOnline()) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            start(next.player, next.pass, true);
+        }
+    }
+
+    private void start(Player player, Consumer<Runnable> pass, boolean later) {
+        Runnable done = new Once(this::release);
+        if (!later) {
+            runPass(pass, done);
+            return;
+        }
+
+        // Queued passes start on the player's own thread, the slot is freed if they log out first,
+        // including when they are already gone by now
+        Scheduling.runFor(plugin, player, () -> runPass(pass, done), done);
+    }
+
+    private void runPass(Consumer<Runnable> pass, Runnable done) {
+        try {
+            pass.accept(done);
+        } catch (RuntimeException e) {
+            done.run();
+            throw e;
+        }
+    }
+
+    private record Pending(Player player, UUID key, Consumer<Runnable> pass) {
+    }
+
+    /**
+     * Runs the wrapped task on the first call only, so a slot can't be freed twice
+     */
+    private static final class Once implements Runnable {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final Runnable task;
+
+        Once(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (calls.getAndIncrement() == 0) task.run();
+        }
+    }
+}
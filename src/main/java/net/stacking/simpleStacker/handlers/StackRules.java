@@ -0,0 +1,121 @@
+package net.stacking.simpleStacker.handlers;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Immutable set of stack rules compiled from the items section
+ * Stack size per Material.ordinal(), 0 = no rule
+ */
+public final class StackRules {
+
+    private static final Material[] MATERIALS = Material.values();
+
+    static final StackRules EMPTY = new StackRules(new int[MATERIALS.length], 0, 0);
+
+    private final int[] stackSizes;
+    private final Map<Material, Integer> view;
+    private final int loaded;
+    private final int invalid;
+
+    private StackRules(int[] stackSizes, int loaded, int invalid) {
+        this.stackSizes = stackSizes;
+        this.view = toMap(stackSizes);
+        this.loaded = loaded;
+        this.invalid = invalid;
+    }
+
+    /**
+     * Parse and validate the items section, safe to call off the main thread
+     */
+    public static StackRules compile(ConfigurationSection itemsSection, Logger log) {
+        int[] table = new int[MATERIALS.length];
+        int success = 0, invalid = 0;
+
+        for (String materialName : itemsSection.getKeys(false)) {
+            int stackSize = itemsSection.getInt(materialName);
+
+            Material material = Material.matchMaterial(materialName);
+            if (material == null) {
+                log.fine("Unknown material (skipping): " + materialName);
+                invalid++;
+                continue;
+            }
+
+            // Range is only checked here, lookups trust the table
+            if (stackSize < 1 || stackSize > 99) {
+                log.fine("Invalid stack size " + stackSize + " for " + material + " (must be 1..99) - skipping");
+                invalid++;
+                continue;
+            }
+
+            // Removed durability check - Now damageable items can stack!
+            if (table[material.ordinal()] == 0) success++;
+            table[material.ordinal()] = stackSize;
+        }
+
+        return new StackRules(table, success, invalid);
+    }
+
+    /**
+     * Configured stack size for a material, or 0 if there is no rule
+     */
+    public int getStackSize(Material material) {
+        return stackSizes[material.ordinal()];
+    }
+
+    public Map<Material, Integer> asMap() {
+        return view;
+    }
+
+    public int size() {
+        return loaded;
+    }
+
+    public int getInvalid() {
+        return invalid;
+    }
+
+    /**
+     * Check if any damageable material may stack above 1
+     */
+    public boolean hasDamageableRule() {
+        for (int i = 0; i < stackSizes.length; i++) {
+            if (stackSizes[i] > 1 && MaterialTraits.has(MATERIALS[i], MaterialTraits.DAMAGEABLE)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * One line summary of what changed compared to the previous rules
+     */
+    public String describeChanges(StackRules previous) {
+        int added = 0, removed = 0, changed = 0;
+
+        for (int i = 0; i < stackSizes.length; i++) {
+            int now = stackSizes[i];
+            int before = previous.stackSizes[i];
+            if (now == before) continue;
+
+            if (before == 0) added++;
+            else if (now == 0) removed++;
+            else changed++;
+        }
+
+        return loaded + " stack rules (" + added + " added, " + removed + " removed, "
+                + changed + " changed, " + invalid + " invalid)";
+    }
+
+    private static Map<Material, Integer> toMap(int[] table) {
+        Map<Material, Integer> map = new EnumMap<>(Material.class);
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != 0) map.put(MATERIALS[i], table[i]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+}
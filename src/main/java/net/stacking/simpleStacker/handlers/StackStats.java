@@ -0,0 +1,174 @@
+package net.stacking.simpleStacker.handlers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for /stack and the durability checks
+ * Cheap enough to stay on in production, read with /stack stats or over JMX
+ * Every timed phase is also written as a JFR event while a recording is running
+ */
+public class StackStats implements StackStatsMBean {
+
+    public enum Phase {
+        SNAPSHOT("snapshot"),
+        NORMALIZE("normalize"),
+        MERGE("merge"),
+        COMMIT("commit"),
+        COMMAND("command"),
+        INTERACT("interact"),
+        BLOCK_BREAK("block-break"),
+        ENTITY_DAMAGE("entity-damage"),
+        ITEM_DAMAGE("item-damage");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+    // Counted by whichever engine holds these stats, the shared one serves every caller
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder shulkerDeepCompares = new LongAdder();
+    private final LongAdder mergedGroups = new LongAdder();
+    private final LongAdder staleCommits = new LongAdder();
+    private final LongAdder blockedUses = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public StackStats() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Record a phase that started at the given System.nanoTime()
+     */
+    public void record(Phase phase, long startNanos) {
+        long took = System.nanoTime() - startNanos;
+        histograms[phase.ordinal()].record(took);
+
+        PhaseEvent event = new PhaseEvent();
+        if (event.isEnabled()) {
+            event.phase = phase.label;
+            event.took = took;
+            event.commit();
+        }
+    }
+
+    public LatencyHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    public void countComparison() {
+        comparisons.increment();
+    }
+
+    public void countShulkerDeepCompare() {
+        shulkerDeepCompares.increment();
+    }
+
+    public void countMergedGroups(int groups) {
+        mergedGroups.add(groups);
+    }
+
+    public void countStaleCommit() {
+        staleCommits.increment();
+    }
+
+    public void countBlockedUse() {
+        blockedUses.increment();
+    }
+
+    public void countError() {
+        errors.increment();
+    }
+
+    @Override
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    @Override
+    public long getShulkerDeepCompares() {
+        return shulkerDeepCompares.sum();
+    }
+
+    @Override
+    public long getMergedGroups() {
+        return mergedGroups.sum();
+    }
+
+    @Override
+    public long getStaleCommits() {
+        return staleCommits.sum();
+    }
+
+    @Override
+    public long getBlockedUses() {
+        return blockedUses.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public String[] getPhaseSummaries() {
+        List<String> lines = new ArrayList<>();
+        for (Phase phase : PHASES) {
+            LatencyHistogram histogram = getHistogram(phase);
+            if (histogram.getCount() == 0) continue;
+            lines.add(summary(phase));
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    /**
+     * "merge: 120x, avg 0.012 ms, p50 0.010 ms, p99 0.040 ms, max 0.100 ms"
+     */
+    public String summary(Phase phase) {
+        LatencyHistogram histogram = getHistogram(phase);
+        return String.format(Locale.ROOT, "%s: %dx, avg %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                phase.label, histogram.getCount(), histogram.getMean() / 1_000_000,
+                millis(histogram.getPercentile(0.5)), millis(histogram.getPercentile(0.99)), millis(histogram.getMax()));
+    }
+
+    @Override
+    public double getPercentileMillis(String phase, double fraction) {
+        for (Phase candidate : PHASES) {
+            if (candidate.label.equalsIgnoreCase(phase) || candidate.name().equalsIgnoreCase(phase)) {
+                return millis(getHistogram(candidate).getPercentile(fraction));
+            }
+        }
+        throw new IllegalArgumentException("Unknown phase: " + phase);
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        comparisons.reset();
+        shulkerDeepCompares.reset();
+        mergedGroups.reset();
+        staleCommits.reset();
+        blockedUses.reset();
+        errors.reset();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,41 @@
+package net.stacking.simpleStacker.handlers;
+
+/**
+ * JMX view of StackStats, registered as net.stacking.simpleStacker:type=StackStats
+ */
+public interface StackStatsMBean {
+
+    /**
+     * Engine-wide: /stack, auto-stack, death drops and ground merging all count here
+     */
+    long getComparisons();
+
+    /**
+     * Engine-wide, like getComparisons
+     */
+    long getShulkerDeepCompares();
+
+    /**
+     * Engine-wide, like getComparisons
+     */
+    long getMergedGroups();
+
+    long getStaleCommits();
+
+    long getBlockedUses();
+
+    long getErrors();
+
+    /**
+     * One line per timed phase: count, mean, p50, p99 and max in milliseconds
+     * Snapshot, normalize, merge and commit are /stack only
+     */
+    String[] getPhaseSummaries();
+
+    /**
+     * Latency of one phase (e.g. "merge") at a fraction between 0 and 1, in milliseconds
+     */
+    double getPercentileMillis(String phase, double fraction);
+
+    void reset();
+}
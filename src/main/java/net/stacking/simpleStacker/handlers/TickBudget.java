@@ -0,0 +1,59 @@
+package net.stacking.simpleStacker.handlers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Millisecond budget for work a timer hands out to other threads each tick
+ * How many jobs fit is based on a running average of how long one job takes,
+ * and jobs still running on their own thread count against the budget
+ */
+final class TickBudget {
+
+    private final long budgetNanos;
+    private final AtomicLong averageNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param guessNanos cost of one job until real samples come in
+     */
+    TickBudget(double budgetMillis, long guessNanos) {
+        this.budgetNanos = (long) (Math.max(0.1, budgetMillis) * 1_000_000);
+        this.averageNanos = new AtomicLong(guessNanos);
+    }
+
+    /**
+     * Jobs that may still be handed out this tick, at least one when nothing is running
+     */
+    int slots() {
+        return (int) Math.max(1, budgetNanos / Math.max(1, averageNanos.get())) - inFlight.get();
+    }
+
+    /**
+     * A job was handed out
+     */
+    void start() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * A job ran, its time goes into the average
+     */
+    void finish(long startNanos) {
+        long took = System.nanoTime() - startNanos;
+        // Moving average, 1/8 weight for the newest sample
+        averageNanos.getAndUpdate(avg -> avg + (took - avg) / 8);
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * A job was dropped without running
+     */
+    void abandon() {
+        inFlight.decrementAndGet();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,44 @@
+package net.stacking.simpleStacker.handlers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket kept as a single timestamp: the time the bucket will be full again
+ * Taking a token pushes that time one interval ahead, an empty bucket is one that is
+ * more than burst intervals ahead of now
+ * Plain Java, so it can be benchmarked without a server
+ */
+final class TokenBucket {
+
+    // A bucket nobody took from yet
+    static final long FULL = Long.MIN_VALUE;
+
+    // Nanoseconds for one token to come back
+    private final long intervalNanos;
+    // How far ahead of now the bucket may run before it is empty
+    private final long toleranceNanos;
+
+    TokenBucket(int burst, double perSecond) {
+        this.intervalNanos = (long) (1_000_000_000L / Math.max(0.01, perSecond));
+        this.toleranceNanos = intervalNanos * Math.max(1, burst);
+    }
+
+    /**
+     * Take one token, lock-free
+     *
+     * @param full the bucket's full-again time, starts at FULL
+     * @param now  System.nanoTime()
+     * @return false if the bucket is empty
+     */
+    boolean tryAcquire(AtomicLong full, long now) {
+        while (true) {
+            long current = full.get();
+            // A bucket that filled up in the past is simply full now
+            long start = current == FULL || current - now < 0 ? now : current;
+            long next = start + intervalNanos;
+
+            if (next - now > toleranceNanos) return false;
+            if (full.compareAndSet(current, next)) return true;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package net.stacking.simpleStacker.handlers;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tells players they can't use a stacked tool, on the action bar
+ * The message is built once, repeats within the window are dropped,
+ * and however many events fire in a tick a player gets at most one packet
+ */
+public class UsageNotifier {
+
+    private static final Component MESSAGE = Component.text("You must take one item out of the stack and use that!", NamedTextColor.RED);
+
+    private final Plugin plugin;
+    private final long windowNanos;
+    private final Map<UUID, State> states = new ConcurrentHashMap<>();
+
+    public UsageNotifier(Plugin plugin, long windowMillis) {
+        this.plugin = plugin;
+        this.windowNanos = Math.max(0, windowMillis) * 1_000_000;
+    }
+
+    /**
+     * Queue the message for this player, unless one is already queued or was shown recently
+     */
+    public void notify(Player player) {
+        State state = states.computeIfAbsent(player.getUniqueId(), id -> new State());
+        if (state.sentAt != 0 && System.nanoTime() - state.sentAt < windowNanos) return;
+        if (!state.pending.compareAndSet(false, true)) return;
+
+        // Sent on the player's next tick, so a burst of events in one tick becomes one packet
+        Scheduling.runFor(plugin, player, () -> {
+            state.sentAt = System.nanoTime();
+            state.pending.set(false);
+            player.sendActionBar(MESSAGE);
+        }, () -> state.pending.set(false));
+    }
+
+    /**
+     * Drop the state of a player who left
+     */
+    public void forget(UUID player) {
+        states.remove(player);
+    }
+
+    private static final class State {
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private volatile long sentAt;
+    }
+}
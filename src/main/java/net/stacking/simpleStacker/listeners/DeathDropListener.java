@@ -0,0 +1,50 @@
+package net.stacking.simpleStacker.listeners;
+
+import net.stacking.simpleStacker.SimpleStacker;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+
+/**
+ * Stacks a dead player's drops before they spawn, so one death spawns fewer item entities
+ * Runs at HIGH so grave/loot plugins listening later already see the compacted list
+ */
+public class DeathDropListener implements Listener {
+
+    private final SimpleStacker plugin;
+
+    public DeathDropListener(SimpleStacker plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onDeath(PlayerDeathEvent e) {
+        List<ItemStack> drops = e.getDrops();
+        if (drops.size() < 2) return;
+
+        try {
+            // Plan on copies, the drops themselves are only replaced once the plan went through
+            ItemStack[] slots = new ItemStack[drops.size()];
+            for (int i = 0; i < slots.length; i++) {
+                ItemStack item = drops.get(i);
+                slots[i] = item == null ? null : item.clone();
+            }
+
+            // Same rules as /stack, emptied stacks come back as null
+            int merged = plugin.getStackEngine().plan(slots, plugin.getItemHandler().getRules());
+            if (merged == 0) return;
+
+            drops.clear();
+            for (ItemStack item : slots) {
+                if (item != null) drops.add(item);
+            }
+        } catch (Exception ex) {
+            // Leave the drops as they were, nothing is lost
+            plugin.getLogger().warning("Could not compact death drops for " + e.getEntity().getName() + ": " + ex.getMessage());
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package net.stacking.simpleStacker.listeners;
 
-import org.bukkit.ChatColor;
-import org.bukkit.Material;
+import io.papermc.paper.event.player.PlayerInventorySlotChangeEvent;
+import net.stacking.simpleStacker.handlers.ContainerAccessCheck;
+import net.stacking.simpleStacker.handlers.HeldItemState;
+import net.stacking.simpleStacker.handlers.MaterialTraits;
+import net.stacking.simpleStacker.handlers.Scheduling;
+import net.stacking.simpleStacker.handlers.StackStats;
+import net.stacking.simpleStacker.handlers.UsageNotifier;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
@@ -11,30 +17,43 @@ import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerItemDamageEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.Damageable;
 
 /**
  * Prevents players from using stacked damageable items, for better simplicity
  * Error message: "You must take one item out of the stack and use that!"
+ * Shown on the action bar through UsageNotifier, at most once per window
+ * Whether a player holds a stacked damageable item is tracked as it changes,
+ * so the interact, break and attack handlers only check a flag
  */
 public class DurabilityUsageListener implements Listener {
 
-    private static final String ERROR_MESSAGE = ChatColor.RED + "You must take one item out of the stack and use that!";
+    // PlayerInventory slot of the offhand
+    private static final int OFF_HAND_SLOT = 40;
 
-    /**
-     * Check if an item is damageable
-     */
-    private boolean isDamageable(ItemStack item) {
-        if (item == null || item.getType() == Material.AIR) return false;
-        return item.getType().getMaxDurability() > 0;
+    private final Plugin plugin;
+    private final StackStats stats;
+    private final UsageNotifier notifier;
+    private final HeldItemState held = new HeldItemState();
+
+    public DurabilityUsageListener(Plugin plugin, StackStats stats, UsageNotifier notifier) {
+        this.plugin = plugin;
+        this.stats = stats;
+        this.notifier = notifier;
     }
 
     /**
-     * Check if item is stacked (amount > 1) and damageable
+     * Read the hands of players already online, e.g. when the listener is registered after a reload
      */
-    private boolean isStackedDamageable(ItemStack item) {
-        return item != null && item.getAmount() > 1 && isDamageable(item);
+    public void loadOnline(Iterable<? extends Player> players) {
+        for (Player player : players) {
+            Scheduling.runFor(plugin, player, () -> held.refresh(player));
+        }
     }
 
     /**
@@ -43,46 +62,38 @@ public class DurabilityUsageListener implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = false)
     public void onPlayerInteract(PlayerInteractEvent event) {
+        // /stack container asking for access, not a real click
+        if (event instanceof ContainerAccessCheck) return;
+
+        long start = System.nanoTime();
         Player player = event.getPlayer();
         ItemStack item = event.getItem();
 
-        // Check if player is trying to use a stacked damageable item
-        if (isStackedDamageable(item)) {
+        // Check if player is trying to use a stacked damageable item, the flag first so most events stop there
+        if (isHeld(player, event.getHand()) && HeldItemState.isStackedDamageable(item)) {
             Action action = event.getAction();
 
             // Check if action would use the item
             boolean wouldUseItem = false;
 
-            // Right-click actions that use durability
+            // Right-click actions that use durability (tilling, stripping, paths, etc.)
             if (action == Action.RIGHT_CLICK_BLOCK || action == Action.RIGHT_CLICK_AIR) {
-                Material type = item.getType();
-                // Tools that use durability on right-click
-                if (type.name().endsWith("_HOE") || // Tilling
-                        type.name().endsWith("_AXE") || // Stripping logs
-                        type.name().endsWith("_SHOVEL") || // Path creation
-                        type == Material.FLINT_AND_STEEL ||
-                        type == Material.SHEARS) {
-                    wouldUseItem = true;
-                }
+                wouldUseItem = MaterialTraits.has(item.getType(), MaterialTraits.RIGHT_CLICK_TOOL);
             }
 
             // Left-click actions (breaking blocks handled in BlockBreakEvent)
             // But we prevent the swing animation here
             if (action == Action.LEFT_CLICK_BLOCK || action == Action.LEFT_CLICK_AIR) {
-                if (item.getType().name().endsWith("_PICKAXE") ||
-                        item.getType().name().endsWith("_AXE") ||
-                        item.getType().name().endsWith("_SHOVEL") ||
-                        item.getType().name().endsWith("_SWORD") ||
-                        item.getType().name().endsWith("_HOE")) {
-                    wouldUseItem = true;
-                }
+                wouldUseItem = MaterialTraits.has(item.getType(), MaterialTraits.LEFT_CLICK_TOOL | MaterialTraits.WEAPON);
             }
 
             if (wouldUseItem) {
                 event.setCancelled(true);
-                player.sendMessage(ERROR_MESSAGE);
+                notifier.notify(player);
+                stats.countBlockedUse();
             }
         }
+        stats.record(StackStats.Phase.INTERACT, start);
     }
 
     /**
@@ -90,13 +101,15 @@ public class DurabilityUsageListener implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = false)
     public void onBlockBreak(BlockBreakEvent event) {
+        long start = System.nanoTime();
         Player player = event.getPlayer();
-        ItemStack item = player.getInventory().getItemInMainHand();
 
-        if (isStackedDamageable(item)) {
+        if (held.inMainHand(player) && HeldItemState.isStackedDamageable(player.getInventory().getItemInMainHand())) {
             event.setCancelled(true);
-            player.sendMessage(ERROR_MESSAGE);
+            notifier.notify(player);
+            stats.countBlockedUse();
         }
+        stats.record(StackStats.Phase.BLOCK_BREAK, start);
     }
 
     /**
@@ -106,13 +119,15 @@ public class DurabilityUsageListener implements Listener {
     public void onEntityDamage(EntityDamageByEntityEvent event) {
         if (!(event.getDamager() instanceof Player)) return;
 
+        long start = System.nanoTime();
         Player player = (Player) event.getDamager();
-        ItemStack item = player.getInventory().getItemInMainHand();
 
-        if (isStackedDamageable(item)) {
+        if (held.inMainHand(player) && HeldItemState.isStackedDamageable(player.getInventory().getItemInMainHand())) {
             event.setCancelled(true);
-            player.sendMessage(ERROR_MESSAGE);
+            notifier.notify(player);
+            stats.countBlockedUse();
         }
+        stats.record(StackStats.Phase.ENTITY_DAMAGE, start);
     }
 
     /**
@@ -120,11 +135,61 @@ public class DurabilityUsageListener implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = false)
     public void onItemDamage(PlayerItemDamageEvent event) {
+        long start = System.nanoTime();
         ItemStack item = event.getItem();
 
-        if (item != null && item.getAmount() > 1 && isDamageable(item)) {
+        if (HeldItemState.isStackedDamageable(item)) {
             event.setCancelled(true);
-            event.getPlayer().sendMessage(ERROR_MESSAGE);
+            notifier.notify(event.getPlayer());
+            stats.countBlockedUse();
         }
+        stats.record(StackStats.Phase.ITEM_DAMAGE, start);
+    }
+
+    private boolean isHeld(Player player, EquipmentSlot hand) {
+        if (hand == EquipmentSlot.HAND) return held.inMainHand(player);
+        if (hand == EquipmentSlot.OFF_HAND) return held.inOffHand(player);
+        return false;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        held.refresh(event.getPlayer());
+    }
+
+    /**
+     * Switching hotbar slots, the new slot isn't selected yet so read it directly
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onHeldChange(PlayerItemHeldEvent event) {
+        Player player = event.getPlayer();
+        held.setMainHand(player.getUniqueId(), player.getInventory().getItem(event.getNewSlot()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSwapHands(PlayerSwapHandItemsEvent event) {
+        held.setMainHand(event.getPlayer().getUniqueId(), event.getMainHandItem());
+        held.setOffHand(event.getPlayer().getUniqueId(), event.getOffHandItem());
+    }
+
+    /**
+     * Any change to the player's inventory: clicks, pickups, /stack, auto-stack, commands, breaking
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSlotChange(PlayerInventorySlotChangeEvent event) {
+        Player player = event.getPlayer();
+        int slot = event.getSlot();
+
+        if (slot == player.getInventory().getHeldItemSlot()) {
+            held.setMainHand(player.getUniqueId(), event.getNewItemStack());
+        } else if (slot == OFF_HAND_SLOT) {
+            held.setOffHand(player.getUniqueId(), event.getNewItemStack());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        notifier.forget(event.getPlayer().getUniqueId());
+        held.forget(event.getPlayer().getUniqueId());
     }
 }
@@ -0,0 +1,44 @@
+package net.stacking.simpleStacker.listeners;
+
+import net.stacking.simpleStacker.SimpleStacker;
+import net.stacking.simpleStacker.handlers.StackEngine;
+import net.stacking.simpleStacker.handlers.StackRules;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Lets hoppers fill destination stacks up to the configured sizes
+ * Moved items get the max stack size stamp, vanilla then tops up a matching partial stack with it
+ */
+public class HopperListener implements Listener {
+
+    private final SimpleStacker plugin;
+
+    public HopperListener(SimpleStacker plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onMove(InventoryMoveItemEvent e) {
+        StackRules rules = plugin.getItemHandler().getRules();
+        ItemStack moved = e.getItem();
+
+        // Fast path: no rule for this material, vanilla handles it
+        if (rules.getStackSize(moved.getType()) == 0) return;
+
+        try {
+            ItemStack stamped = moved.clone();
+            StackEngine engine = plugin.getStackEngine();
+            engine.applyMaxStackSize(stamped, rules);
+
+            // Vanilla places it, merging into a partial stack of the same item up to the stamped size
+            // Never touch source or destination here, the hopper restores the source slot afterwards
+            if (!stamped.equals(moved)) e.setItem(stamped);
+        } catch (Exception ex) {
+            // Fail silently, vanilla moves the item as usual
+        }
+    }
+}
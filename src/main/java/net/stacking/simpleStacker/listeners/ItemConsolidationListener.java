@@ -0,0 +1,39 @@
+package net.stacking.simpleStacker.listeners;
+
+import net.stacking.simpleStacker.handlers.ItemConsolidator;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.ItemSpawnEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+/**
+ * Feeds every dropped item into the consolidator, the merging itself happens later
+ * Pending items of a chunk are dropped when it unloads
+ */
+public class ItemConsolidationListener implements Listener {
+
+    private final ItemConsolidator consolidator;
+
+    public ItemConsolidationListener(ItemConsolidator consolidator) {
+        this.consolidator = consolidator;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemSpawn(ItemSpawnEvent e) {
+        try {
+            consolidator.track(e.getEntity());
+        } catch (Exception ex) {
+            // Fail silently
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        try {
+            consolidator.forgetChunk(e.getWorld().getUID(), e.getChunk().getX(), e.getChunk().getZ());
+        } catch (Exception ex) {
+            // Fail silently
+        }
+    }
+}
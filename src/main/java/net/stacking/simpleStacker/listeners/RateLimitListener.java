@@ -0,0 +1,24 @@
+package net.stacking.simpleStacker.listeners;
+
+import net.stacking.simpleStacker.handlers.StackRateLimiter;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Drops a player's /stack rate limit state when they leave, so it only ever covers online players
+ */
+public class RateLimitListener implements Listener {
+
+    private final StackRateLimiter limiter;
+
+    public RateLimitListener(StackRateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        limiter.forget(event.getPlayer().getUniqueId());
+    }
+}
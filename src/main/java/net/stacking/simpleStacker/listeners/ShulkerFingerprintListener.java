@@ -0,0 +1,37 @@
+package net.stacking.simpleStacker.listeners;
+
+import net.stacking.simpleStacker.handlers.MaterialTraits;
+import net.stacking.simpleStacker.handlers.ShulkerFingerprint;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.ItemSpawnEvent;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Clears shulker content fingerprints when a box drops as an item
+ * A placed box can be filled or emptied, so the stored hash can't be trusted after that
+ */
+public class ShulkerFingerprintListener implements Listener {
+
+    private final ShulkerFingerprint fingerprints;
+
+    public ShulkerFingerprintListener(ShulkerFingerprint fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
+    // HIGHEST, not MONITOR: this changes the spawned item
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onItemSpawn(ItemSpawnEvent event) {
+        try {
+            ItemStack stack = event.getEntity().getItemStack();
+            if (!MaterialTraits.has(stack.getType(), MaterialTraits.SHULKER_BOX)) return;
+            if (!fingerprints.has(stack)) return;
+
+            fingerprints.clear(stack);
+            event.getEntity().setItemStack(stack);
+        } catch (Exception e) {
+            // Fail silently
+        }
+    }
+}
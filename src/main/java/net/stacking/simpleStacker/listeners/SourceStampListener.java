@@ -0,0 +1,86 @@
+package net.stacking.simpleStacker.listeners;
+
+import net.stacking.simpleStacker.SimpleStacker;
+import net.stacking.simpleStacker.handlers.StackRules;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.VillagerAcquireTradeEvent;
+import org.bukkit.event.inventory.PrepareItemCraftEvent;
+import org.bukkit.event.world.LootGenerateEvent;
+import org.bukkit.inventory.CraftingInventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.MerchantRecipe;
+
+/**
+ * Stamps the max stack size on items where they are created (loot chests, villager trades, crafting)
+ * so they already stack before anyone runs /stack
+ * Each event touches one item or one loot list, never whole inventories
+ */
+public class SourceStampListener implements Listener {
+
+    private final SimpleStacker plugin;
+
+    public SourceStampListener(SimpleStacker plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onLoot(LootGenerateEvent e) {
+        try {
+            StackRules rules = plugin.getItemHandler().getRules();
+            for (ItemStack item : e.getLoot()) {
+                if (item != null && rules.getStackSize(item.getType()) != 0) {
+                    plugin.getStackEngine().applyMaxStackSize(item, rules);
+                }
+            }
+        } catch (Exception ex) {
+            // Fail silently
+        }
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onTrade(VillagerAcquireTradeEvent e) {
+        try {
+            MerchantRecipe recipe = e.getRecipe();
+            ItemStack result = stamped(recipe.getResult());
+            if (result == null) return;
+
+            // The result of a recipe can't be changed, so copy the recipe with the stamped result
+            MerchantRecipe copy = new MerchantRecipe(result, recipe.getUses(), recipe.getMaxUses(),
+                    recipe.hasExperienceReward(), recipe.getVillagerExperience(), recipe.getPriceMultiplier(),
+                    recipe.getDemand(), recipe.getSpecialPrice(), recipe.shouldIgnoreDiscounts());
+            copy.setIngredients(recipe.getIngredients());
+            e.setRecipe(copy);
+        } catch (Exception ex) {
+            // Fail silently
+        }
+    }
+
+    // HIGHEST so recipe plugins setting their own result at HIGH or lower are stamped too
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onCraft(PrepareItemCraftEvent e) {
+        try {
+            CraftingInventory inventory = e.getInventory();
+            ItemStack result = stamped(inventory.getResult());
+            if (result != null) inventory.setResult(result);
+        } catch (Exception ex) {
+            // Fail silently
+        }
+    }
+
+    /**
+     * Stamped copy of an item, or null if it has no rule or already has the right size
+     */
+    private ItemStack stamped(ItemStack item) {
+        if (item == null) return null;
+
+        // Fast path: most items have no rule
+        StackRules rules = plugin.getItemHandler().getRules();
+        if (rules.getStackSize(item.getType()) == 0) return null;
+
+        ItemStack copy = item.clone();
+        plugin.getStackEngine().applyMaxStackSize(copy, rules);
+        return copy.equals(item) ? null : copy;
+    }
+}
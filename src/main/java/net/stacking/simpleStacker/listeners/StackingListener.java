@@ -1,11 +1,234 @@
 package net.stacking.simpleStacker.listeners;
 
+import net.stacking.simpleStacker.SimpleStacker;
+import net.stacking.simpleStacker.handlers.InventorySnapshot;
+import net.stacking.simpleStacker.handlers.Scheduling;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
-Players must use /stack command manually.
+ * Opt-in auto stacking, toggled per player with /stack auto
+ * Events only write down which slots (or item types) they touched,
+ * then each player's dirty slots are stamped and merged once on their next tick
  */
 public class StackingListener implements Listener {
 
+    // Main inventory only (0-35), same as /stack
+    private static final int STORAGE_SLOTS = 36;
+
+    private final SimpleStacker plugin;
+    private final NamespacedKey toggleKey;
+    private final boolean defaultOn;
+
+    private final Set<UUID> enabled = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, DirtySlots> dirty = new ConcurrentHashMap<>();
+
+    public StackingListener(SimpleStacker plugin, boolean defaultOn) {
+        this.plugin = plugin;
+        this.toggleKey = new NamespacedKey(plugin, "auto_stack");
+        this.defaultOn = defaultOn;
+    }
+
+    /**
+     * Flip auto stacking for a player, the choice is kept on the player across restarts
+     *
+     * @return true if auto stacking is now on
+     */
+    public boolean toggle(Player player) {
+        boolean on = !enabled.contains(player.getUniqueId());
+        player.getPersistentDataContainer().set(toggleKey, PersistentDataType.BOOLEAN, on);
+
+        if (on) {
+            enabled.add(player.getUniqueId());
+        } else {
+            enabled.remove(player.getUniqueId());
+            dirty.remove(player.getUniqueId());
+        }
+        return on;
+    }
+
+    /**
+     * Pick up players already online, e.g. after a plugin reload
+     */
+    public void loadOnline(Iterable<? extends Player> players) {
+        for (Player player : players) {
+            load(player);
+        }
+    }
+
+    private void load(Player player) {
+        Boolean on = player.getPersistentDataContainer().get(toggleKey, PersistentDataType.BOOLEAN);
+        if (on != null ? on : defaultOn) {
+            enabled.add(player.getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent e) {
+        load(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        enabled.remove(e.getPlayer().getUniqueId());
+        dirty.remove(e.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Covers normal clicks, shift-clicks, number keys, double-click collect and crafting results
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClick(InventoryClickEvent e) {
+        if (!(e.getWhoClicked() instanceof Player player)) return;
+        if (!enabled.contains(player.getUniqueId())) return;
+
+        DirtySlots slots = dirtySlots(player);
+
+        if (e.getClickedInventory() instanceof PlayerInventory) {
+            slots.markSlot(e.getSlot());
+        }
+        if (e.getHotbarButton() >= 0) {
+            slots.markSlot(e.getHotbarButton());
+        }
+
+        // Shift-click and collect move items into slots we can't see from here
+        slots.markType(e.getCurrentItem());
+        slots.markType(e.getCursor());
+
+        schedule(player, slots);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDrag(InventoryDragEvent e) {
+        if (!(e.getWhoClicked() instanceof Player player)) return;
+        if (!enabled.contains(player.getUniqueId())) return;
+
+        DirtySlots slots = dirtySlots(player);
+        int topSize = e.getView().getTopInventory().getSize();
+
+        for (int rawSlot : e.getRawSlots()) {
+            // Raw slots past the top inventory belong to the player
+            if (rawSlot >= topSize) {
+                slots.markSlot(e.getView().convertSlot(rawSlot));
+            }
+        }
+
+        schedule(player, slots);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickup(EntityPickupItemEvent e) {
+        if (!(e.getEntity() instanceof Player player)) return;
+        if (!enabled.contains(player.getUniqueId())) return;
+
+        DirtySlots slots = dirtySlots(player);
+        slots.markType(e.getItem().getItemStack());
+
+        schedule(player, slots);
+    }
+
+    private DirtySlots dirtySlots(Player player) {
+        return dirty.computeIfAbsent(player.getUniqueId(), id -> new DirtySlots());
+    }
+
+    /**
+     * One flush per player per tick, however many events came in
+     */
+    private void schedule(Player player, DirtySlots slots) {
+        if (slots.scheduled || slots.isEmpty()) return;
+
+        slots.scheduled = true;
+        // A retired task never flushes, so clear the slots or auto-stack stays off until rejoin
+        Scheduling.runFor(plugin, player, () -> flush(player), slots::clear);
+    }
+
+    /**
+     * Stamp and merge the dirty slots, together with every other slot holding the same item types
+     */
+    private void flush(Player player) {
+        DirtySlots slots = dirty.get(player.getUniqueId());
+        if (slots == null) return;
+
+        try {
+            PlayerInventory inventory = player.getInventory();
+            ItemStack[] live = inventory.getStorageContents();
+
+            // Item types worth looking at: the ones in touched slots plus the ones events named
+            Set<Material> types = EnumSet.noneOf(Material.class);
+            types.addAll(slots.types);
+            for (int i = 0; i < STORAGE_SLOTS && i < live.length; i++) {
+                if ((slots.mask & (1L << i)) != 0 && live[i] != null && !live[i].getType().isAir()) {
+                    types.add(live[i].getType());
+                }
+            }
+            slots.clear();
+
+            if (types.isEmpty()) return;
+
+            // Merge partners can sit anywhere in the main inventory, so take every slot of those types
+            int[] candidates = new int[STORAGE_SLOTS];
+            int count = 0;
+            for (int i = 0; i < STORAGE_SLOTS && i < live.length; i++) {
+                if (live[i] != null && types.contains(live[i].getType())) {
+                    candidates[count++] = i;
+                }
+            }
+            if (count == 0) return;
+
+            InventorySnapshot snapshot = InventorySnapshot.capture(inventory, Arrays.copyOf(candidates, count));
+            plugin.getStackEngine().plan(snapshot.getSlots(), plugin.getItemHandler().getRules());
+            snapshot.commit();
+
+        } catch (Exception ex) {
+            slots.clear();
+            plugin.getLogger().warning("Auto stacking failed for " + player.getName() + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Slots and item types touched since the last flush
+     * Only used from the player's own thread
+     */
+    private static final class DirtySlots {
+        private long mask;
+        private final Set<Material> types = EnumSet.noneOf(Material.class);
+        private boolean scheduled;
+
+        void markSlot(int slot) {
+            if (slot >= 0 && slot < STORAGE_SLOTS) mask |= 1L << slot;
+        }
+
+        void markType(ItemStack item) {
+            if (item != null && !item.getType().isAir()) types.add(item.getType());
+        }
+
+        boolean isEmpty() {
+            return mask == 0 && types.isEmpty();
+        }
 
+        void clear() {
+            mask = 0;
+            types.clear();
+            scheduled = false;
+        }
+    }
 }